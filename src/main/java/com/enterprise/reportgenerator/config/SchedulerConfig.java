@@ -10,7 +10,7 @@ public class SchedulerConfig {
     @Bean
     public ThreadPoolTaskScheduler taskScheduler() {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
-        scheduler.setPoolSize(10); // Allow multiple concurrent jobs
+        scheduler.setPoolSize(3); // Cron triggers only hand runs to JobExecutionEngine; plus history and retention sweeps
         scheduler.setThreadNamePrefix("scheduled-task-");
         scheduler.setWaitForTasksToCompleteOnShutdown(true);
         return scheduler;
@@ -2,6 +2,9 @@ package com.enterprise.reportgenerator.controller;
 
 import com.enterprise.reportgenerator.model.MetricConfig;
 import com.enterprise.reportgenerator.repository.JsonMetricRepository;
+import com.enterprise.reportgenerator.repository.MetricHistoryRepository;
+import com.enterprise.reportgenerator.service.MetricCache;
+import com.enterprise.reportgenerator.service.MetricHistoryRetentionService;
 import com.enterprise.reportgenerator.util.ErrorUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +15,8 @@ import org.springframework.web.bind.annotation.*;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/api/dashboard")
@@ -20,10 +25,14 @@ import java.util.UUID;
 @Slf4j
 public class DashboardController {
 
+    private static final Pattern STEP = Pattern.compile("(\\d+)(ms|s|m|h|d)?");
+
     private final JsonMetricRepository metricRepository;
-    private final com.enterprise.reportgenerator.repository.JsonMetricHistoryRepository historyRepository;
+    private final MetricHistoryRepository historyRepository;
     private final com.enterprise.reportgenerator.service.MetricHistoryService historyService;
     private final JdbcTemplate jdbcTemplate;
+    private final MetricCache metricCache;
+    private final MetricHistoryRetentionService historyRetentionService;
 
     @GetMapping("/metrics")
     public List<MetricConfig> getAllMetrics() {
@@ -47,17 +56,99 @@ public class DashboardController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Collected points, optionally limited to from/to (epoch ms, inclusive). With a
+     * step (ms, or e.g. 5m, 1h, 1d) points are merged into step-wide buckets using
+     * agg = avg, min, max or last; whole hours and days are read from the rollups.
+     */
     @GetMapping("/history/{id}")
-    public ResponseEntity<List<com.enterprise.reportgenerator.model.MetricHistory>> getMetricHistory(
-            @PathVariable String id) {
-        // Return only real collected data
-        return ResponseEntity.ok(historyRepository.findByMetricId(id));
+    public ResponseEntity<?> getMetricHistory(@PathVariable String id,
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to,
+            @RequestParam(required = false) String step,
+            @RequestParam(defaultValue = "avg") String agg) {
+        long start = from != null ? from : Long.MIN_VALUE;
+        long end = to != null ? to : Long.MAX_VALUE;
+        if (start > end) {
+            return ResponseEntity.badRequest().body(Map.of("error", "from must not be after to"));
+        }
+        if (step == null) {
+            return ResponseEntity.ok(historyRepository.findRange(id, start, end));
+        }
+        MetricHistoryRepository.Aggregation aggregation;
+        try {
+            aggregation = MetricHistoryRepository.Aggregation.valueOf(agg.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "agg must be avg, min, max or last"));
+        }
+        long stepMs = parseStep(step);
+        if (stepMs <= 0) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "step must be a positive duration like 300000, 5m, 1h or 1d"));
+        }
+        return ResponseEntity.ok(historyRepository.downsample(id, start, end, stepMs, aggregation));
+    }
+
+    @GetMapping("/history-retention")
+    public ResponseEntity<?> getLastHistoryRetentionSweep() {
+        MetricHistoryRetentionService.SweepResult last = historyRetentionService.getLastSweep();
+        return last != null ? ResponseEntity.ok(last) : ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/history-retention/sweep")
+    public MetricHistoryRetentionService.SweepResult runHistoryRetentionSweep() {
+        return historyRetentionService.sweep();
+    }
+
+    // Milliseconds, or a number with an ms, s, m, h or d suffix; -1 when malformed
+    private static long parseStep(String step) {
+        Matcher m = STEP.matcher(step.trim());
+        if (!m.matches()) {
+            return -1;
+        }
+        try {
+            long amount = Long.parseLong(m.group(1));
+            String unit = m.group(2) == null ? "ms" : m.group(2);
+            switch (unit) {
+                case "s":
+                    return Math.multiplyExact(amount, 1000L);
+                case "m":
+                    return Math.multiplyExact(amount, 60_000L);
+                case "h":
+                    return Math.multiplyExact(amount, MetricHistoryRepository.HOUR_MS);
+                case "d":
+                    return Math.multiplyExact(amount, MetricHistoryRepository.DAY_MS);
+                default:
+                    return amount;
+            }
+        } catch (ArithmeticException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Metrics computed by jobs' dashboardMapping during their last successful run
+    @GetMapping("/job-metrics")
+    public Map<String, List<MetricCache.MetricValue>> getJobMetrics() {
+        return metricCache.getAllMetrics();
+    }
+
+    @GetMapping("/job-metrics/{jobId}")
+    public ResponseEntity<List<MetricCache.MetricValue>> getJobMetrics(@PathVariable String jobId) {
+        return metricCache.hasMetrics(jobId)
+                ? ResponseEntity.ok(metricCache.getMetrics(jobId))
+                : ResponseEntity.notFound().build();
     }
 
     @GetMapping("/data/{id}")
     public ResponseEntity<Object> getMetricData(@PathVariable String id) {
         return metricRepository.findById(id)
                 .map(metric -> {
+                    // Precomputed by a job run: no database round trip
+                    if (metric.getSourceJobId() != null) {
+                        return metricCache.find(metric.getSourceJobId(), metric.getSourceMetricLabel())
+                                .map(value -> ResponseEntity.ok(value.getValue()))
+                                .orElse(ResponseEntity.noContent().build());
+                    }
                     try {
                         // Fetch live data from database
                         if (metric.getType() == null || metric.getType().equals("number")) {
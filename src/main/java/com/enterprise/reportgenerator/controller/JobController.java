@@ -2,13 +2,22 @@ package com.enterprise.reportgenerator.controller;
 
 import com.enterprise.reportgenerator.model.JobConfig;
 import com.enterprise.reportgenerator.repository.JsonConfigRepository;
+import com.enterprise.reportgenerator.service.JobExecutionEngine;
 import com.enterprise.reportgenerator.service.JobExecutionService;
+import com.enterprise.reportgenerator.service.MetricCache;
+import com.enterprise.reportgenerator.service.RunningExecutionRegistry;
 import com.enterprise.reportgenerator.service.SchedulerService;
+import com.enterprise.reportgenerator.service.SqlTemplateRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -20,15 +29,16 @@ public class JobController {
     private final JsonConfigRepository jobRepository;
     private final SchedulerService schedulerService;
     private final JobExecutionService jobExecutionService;
+    private final JobExecutionEngine jobExecutionEngine;
+    private final RunningExecutionRegistry executionRegistry;
+    private final SqlTemplateRegistry sqlTemplates;
+    private final MetricCache metricCache;
 
     @GetMapping
     public List<JobConfig> getAllJobs() {
         return jobRepository.findAll();
     }
 
-    @org.springframework.beans.factory.annotation.Value("${app.config.sql-path:data/sql}")
-    private String sqlBasePath;
-
     @PostMapping
     public ResponseEntity<JobConfig> createOrUpdateJob(@RequestBody JobConfig job) {
         if (job.getId() == null || job.getId().isEmpty()) {
@@ -39,9 +49,7 @@ public class JobController {
         if (job.getSqlContent() != null && !job.getSqlContent().isEmpty()) {
             try {
                 String fileName = job.getId() + ".txt";
-                java.nio.file.Path path = java.nio.file.Paths.get(sqlBasePath, fileName);
-                java.nio.file.Files.createDirectories(path.getParent());
-                java.nio.file.Files.write(path, job.getSqlContent().getBytes());
+                sqlTemplates.save(fileName, job.getSqlContent());
                 job.setSqlFileName(fileName);
             } catch (java.io.IOException e) {
                 return ResponseEntity.internalServerError().build();
@@ -57,24 +65,35 @@ public class JobController {
     public ResponseEntity<Void> deleteJob(@PathVariable String id) {
         schedulerService.cancelJob(id);
         jobRepository.deleteById(id);
+        metricCache.evict(id);
         return ResponseEntity.noContent().build();
     }
 
     @PutMapping("/{id}")
     public ResponseEntity<JobConfig> updateJob(@PathVariable String id, @RequestBody JobConfig job) {
-        if (!jobRepository.findById(id).isPresent()) {
+        java.util.Optional<JobConfig> existing = jobRepository.findById(id);
+        if (!existing.isPresent()) {
             return ResponseEntity.notFound().build();
         }
 
         job.setId(id); // Ensure ID doesn't change
 
+        // Metrics of the old mapping are dropped; the next run publishes the new ones
+        if (!java.util.Objects.equals(existing.get().getDashboardMapping(), job.getDashboardMapping())) {
+            metricCache.evict(id);
+        }
+
+        // The watermark is maintained by the executor; keep it unless the client resets it explicitly
+        if (job.getLastWatermark() == null) {
+            job.setLastWatermark(existing.get().getLastWatermark());
+            job.setWatermarkType(existing.get().getWatermarkType());
+        }
+
         // Handle SQL Content update
         if (job.getSqlContent() != null && !job.getSqlContent().isEmpty()) {
             try {
                 String fileName = job.getId() + ".txt";
-                java.nio.file.Path path = java.nio.file.Paths.get(sqlBasePath, fileName);
-                java.nio.file.Files.createDirectories(path.getParent());
-                java.nio.file.Files.write(path, job.getSqlContent().getBytes());
+                sqlTemplates.save(fileName, job.getSqlContent());
                 job.setSqlFileName(fileName);
             } catch (java.io.IOException e) {
                 return ResponseEntity.internalServerError().build();
@@ -111,13 +130,91 @@ public class JobController {
     }
 
     @PostMapping("/{id}/execute")
-    public ResponseEntity<Void> executeNow(@PathVariable String id) {
+    public ResponseEntity<?> executeNow(@PathVariable String id) {
         if (!jobRepository.findById(id).isPresent()) {
             return ResponseEntity.notFound().build();
         }
-        // Run async
-        new Thread(() -> jobExecutionService.executeJob(id)).start();
-        return ResponseEntity.ok().build();
+        // Run async on the bounded job engine
+        JobExecutionEngine.Submission submission = jobExecutionEngine.submit(id, "MANUAL");
+        switch (submission.getStatus()) {
+            case REJECTED:
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, "30")
+                        .body(Map.of("error", "Too many jobs waiting on the " + submission.getDatabase()
+                                + " database. Please try again later.", "status", submission.getStatus()));
+            case QUEUED:
+            case FOLLOW_UP:
+                return ResponseEntity.accepted().body(submission);
+            default:
+                return ResponseEntity.ok(submission);
+        }
+    }
+
+    /**
+     * Runs the job and streams the output to the client while rows are fetched.
+     * format overrides the job's output format; save=true also keeps a copy as a Report.
+     */
+    @GetMapping("/{id}/stream")
+    public ResponseEntity<?> streamJob(@PathVariable String id,
+            @RequestParam(required = false) String format,
+            @RequestParam(defaultValue = "false") boolean save) {
+        JobExecutionService.StreamRun run;
+        try {
+            run = jobExecutionService.prepareStream(id, format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        if (run == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // Takes a worker of the job's database like any other run; it starts once the response is open
+        JobExecutionEngine.StreamSlot slot = jobExecutionEngine.submitStream(run.getJob(), run.getReportId(),
+                out -> jobExecutionService.streamJob(run, out, save));
+        if (slot.isRejected()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("error", "Too many jobs waiting on the " + slot.getDatabase()
+                            + " database. Please try again later."));
+        }
+
+        StreamingResponseBody body = slot::write;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(run.getFormat().getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + run.getFileName() + "\"")
+                .header("X-Report-Id", run.getReportId())
+                .body(body);
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<?> cancelJob(@PathVariable String id) {
+        if (!jobRepository.findById(id).isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        int cancelled = jobExecutionEngine.cancelJob(id);
+        if (cancelled == 0) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "No queued or running execution for this job."));
+        }
+        return ResponseEntity.ok(Map.of("cancelled", cancelled));
+    }
+
+    @PostMapping("/executions/{reportId}/cancel")
+    public ResponseEntity<?> cancelExecution(@PathVariable String reportId) {
+        if (!jobExecutionEngine.cancelExecution(reportId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("cancelled", 1));
+    }
+
+    @GetMapping("/executions")
+    public List<RunningExecutionRegistry.RunningExecution> getRunningExecutions() {
+        return executionRegistry.findAll();
+    }
+
+    @GetMapping("/queue")
+    public Map<String, Object> getQueueStatus() {
+        return jobExecutionEngine.getStatus();
     }
 
     @PostMapping("/{id}/email")
@@ -2,19 +2,32 @@ package com.enterprise.reportgenerator.controller;
 
 import com.enterprise.reportgenerator.model.Report;
 import com.enterprise.reportgenerator.repository.JsonReportRepository;
+import com.enterprise.reportgenerator.service.ReportArchiveService;
+import com.enterprise.reportgenerator.service.ReportResultCache;
+import com.enterprise.reportgenerator.service.ReportRetentionService;
+import com.enterprise.reportgenerator.util.RangeFileSender;
+import com.enterprise.reportgenerator.util.ReportFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.File;
-import java.util.Comparator;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 @RestController
 @RequestMapping("/api/reports")
@@ -23,30 +36,83 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ReportController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final JsonReportRepository reportRepository;
+    private final ReportResultCache resultCache;
+    private final ReportArchiveService archiveService;
+    private final ReportRetentionService retentionService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
     public List<Report> getAllReports(
             @RequestParam(required = false) Long startDate,
             @RequestParam(required = false) Long endDate) {
-        List<Report> reports = reportRepository.findAll();
+        // Newest first, date range cut from the time index
+        return reportRepository.findPage(new JsonReportRepository.ReportPageRequest(null, null, startDate, endDate,
+                false, null, Integer.MAX_VALUE)).getItems();
+    }
 
-        // Filter by date range if provided
-        if (startDate != null) {
-            reports = reports.stream()
-                    .filter(r -> r.getGeneratedAt() >= startDate)
-                    .collect(Collectors.toList());
+    /**
+     * Paged listing: ?limit=&cursor= (nextCursor of the previous page) with optional
+     * jobId, status, startDate/endDate filters and order=desc|asc on generatedAt.
+     * The page is cut from the sorted indexes and written to the response item by item.
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> getReportPage(
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String jobId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long startDate,
+            @RequestParam(required = false) Long endDate,
+            @RequestParam(defaultValue = "desc") String order) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and " + MAX_PAGE_SIZE));
         }
-        if (endDate != null) {
-            reports = reports.stream()
-                    .filter(r -> r.getGeneratedAt() <= endDate)
-                    .collect(Collectors.toList());
+        if (!order.equalsIgnoreCase("desc") && !order.equalsIgnoreCase("asc")) {
+            return ResponseEntity.badRequest().body(Map.of("error", "order must be asc or desc"));
         }
+        JsonReportRepository.ReportPage page;
+        try {
+            page = reportRepository.findPage(new JsonReportRepository.ReportPageRequest(jobId, status, startDate,
+                    endDate, order.equalsIgnoreCase("asc"), cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        // No flush per item: the servlet buffer decides when bytes go out
+        ObjectWriter itemWriter = objectMapper.writerFor(Report.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("items");
+                for (Report report : page.getItems()) {
+                    itemWriter.writeValue(json, report);
+                }
+                json.writeEndArray();
+                json.writeStringField("nextCursor", page.getNextCursor());
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
 
-        // Sort by generatedAt DESC (newest first)
-        return reports.stream()
-                .sorted(Comparator.comparingLong(Report::getGeneratedAt).reversed())
-                .collect(Collectors.toList());
+    @GetMapping("/cache/stats")
+    public Map<String, Object> getCacheStats() {
+        return resultCache.getStats();
+    }
+
+    @GetMapping("/retention")
+    public ResponseEntity<?> getLastRetentionSweep() {
+        ReportRetentionService.SweepResult last = retentionService.getLastSweep();
+        return last != null ? ResponseEntity.ok(last) : ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/retention/sweep")
+    public ReportRetentionService.SweepResult runRetentionSweep() {
+        return retentionService.sweep();
     }
 
     @GetMapping("/{id}")
@@ -56,42 +122,78 @@ public class ReportController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Downloads a report file (?part=N for split workbooks). Supports conditional GET
+     * and single byte ranges, so repeated and resumed downloads don't start from zero.
+     */
     @GetMapping("/{id}/download")
-    public ResponseEntity<Resource> downloadReport(@PathVariable String id) {
-        return reportRepository.findById(id)
-                .map(report -> {
-                    File file = new File(report.getFilePath());
-                    if (!file.exists()) {
-                        log.error("Report file not found: {}", report.getFilePath());
-                        return ResponseEntity.notFound().<Resource>build();
-                    }
-
-                    Resource resource = new FileSystemResource(file);
-
-                    return ResponseEntity.ok()
-                            .contentType(MediaType.parseMediaType(
-                                    "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                            .header(HttpHeaders.CONTENT_DISPOSITION,
-                                    "attachment; filename=\"" + report.getFileName() + "\"")
-                            .body(resource);
-                })
-                .orElse(ResponseEntity.notFound().build());
+    public void downloadReport(@PathVariable String id, @RequestParam(required = false) Integer part,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Report> found = reportRepository.findById(id);
+        if (found.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Report report = found.get();
+
+        // Split workbooks: ?part=N (1-based) selects a part, the first part is the default
+        String path = report.getFilePath();
+        if (part != null) {
+            List<String> parts = report.getPartFiles() != null ? report.getPartFiles() : List.of(path);
+            if (part < 1 || part > parts.size()) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            path = parts.get(part - 1);
+        }
+        String etagSeed = part != null ? id + "-" + part : id;
+        String contentType = ReportFormat.fromName(report.getFormat()).getContentType();
+        File file = new File(path);
+        if (!file.exists()) {
+            Optional<ReportArchiveService.ArchivedFile> archived = archiveService.locate(path);
+            if (archived.isPresent()) {
+                sendArchived(archived.get(), etagSeed, file.getName(), contentType, request, response);
+                return;
+            }
+            log.error("Report file not found: {}", path);
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = RangeFileSender.etag(etagSeed, file);
+        RangeFileSender.send(file, etag, file.getName(), contentType, request, response);
+    }
+
+    // Same ETag as before archiving (original size and mtime), so cached copies stay valid
+    private void sendArchived(ReportArchiveService.ArchivedFile archived, String etagSeed, String fileName,
+            String contentType, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        File zip = archiveService.archivePath(archived).toFile();
+        String etag = RangeFileSender.etag(etagSeed, archived.getSize(), archived.getLastModified());
+        if (archived.isStored()) {
+            RangeFileSender.send(zip, archived.getOffset(), archived.getSize(), archived.getLastModified(), etag,
+                    fileName, contentType, request, response);
+            return;
+        }
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            ZipEntry entry = zipFile.getEntry(archived.getEntryName());
+            if (entry == null) {
+                log.error("Entry {} missing from archive {}", archived.getEntryName(), zip);
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                RangeFileSender.send(in, archived.getSize(), archived.getLastModified(), etag, fileName,
+                        contentType, request, response);
+            }
+        }
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteReport(@PathVariable String id) {
-        return reportRepository.findById(id)
-                .map(report -> {
-                    // Delete file
-                    File file = new File(report.getFilePath());
-                    if (file.exists()) {
-                        file.delete();
-                    }
-
-                    // Delete record
-                    reportRepository.deleteById(id);
-                    return ResponseEntity.noContent().<Void>build();
-                })
-                .orElse(ResponseEntity.notFound().build());
+        // Files go too (loose or archived), unless another report (a result cache hit) still points at them
+        if (!retentionService.delete(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
     }
 }
@@ -4,6 +4,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -22,6 +23,49 @@ public class JobConfig {
     private String toDate; // Optional: For queries with :ToDate parameter (format: yyyy-MM-dd)
     private DashboardMapping dashboardMapping;
 
+    // JDBC statement tuning (null = use application default / driver default)
+    private Integer fetchSize; // Rows per network round trip
+    private Integer maxRows; // Hard cap on rows returned (per run, across all partitions); ignored by incremental jobs
+    private Integer queryTimeoutSeconds; // Statement timeout
+
+    // Partitioned execution of FromDate/ToDate jobs (null or NONE = single query).
+    // Rows come out in date order; the query's ORDER BY only applies within each partition.
+    private String partitionBy; // DAY, WEEK or MONTH
+    private Integer partitionParallelism; // Max partitions running at once
+
+    // What a trigger does while a run of this job is in progress:
+    // ATTACH (default) joins the running execution, FOLLOW_UP queues exactly one re-run after it
+    private String concurrentRunPolicy = "ATTACH";
+
+    // Reuse the file of an identical run (same SQL, parameters and database) for this long; null/0 = off
+    private Integer resultCacheTtlSeconds;
+
+    // Incremental mode: only rows with watermarkColumn above lastWatermark are fetched
+    private String watermarkColumn; // Result column, e.g. "Wallet Created Date"
+    private String lastWatermark; // Maintained by the executor after each successful run
+    private String watermarkType; // TIMESTAMP, NUMBER or STRING (detected)
+    private String incrementalOutput = "DELTA"; // DELTA, CUMULATIVE or BOTH
+
+    private String outputFormat = "XLSX"; // XLSX, CSV, CSV_GZIP or JSONL
+
+    // XLSX rollover: new sheet after this many data rows, new part file after this many sheets (0 = never)
+    private Integer maxRowsPerSheet;
+    private Integer maxSheetsPerFile;
+
+    // Multi-query job: each query runs concurrently and becomes one sheet of a single XLSX workbook.
+    // When set, sqlFileName/targetDatabase are not used; incremental, partitioning and result cache don't apply.
+    private List<QuerySpec> queries;
+
+    // Burst: one file and Report per distinct value of burstColumn (e.g. CIRCLE), from a single query run.
+    // Each slice is mailed to burstRecipients.get(value); values without an entry get no email.
+    private String burstColumn;
+    private Map<String, List<String>> burstRecipients;
+
+    // Retention: reports (and their files) beyond the newest N runs or older than D days are purged.
+    // null = app.retention.default-keep-runs / default-keep-days, 0 = no limit
+    private Integer retentionKeepRuns;
+    private Integer retentionKeepDays;
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -30,6 +74,15 @@ public class JobConfig {
         private List<MetricConfig> metrics;
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QuerySpec {
+        private String sqlFileName;
+        private String targetDatabase = "PRIMARY"; // PRIMARY or SECONDARY
+        private String sheetName; // Defaults to the SQL file name without .txt
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -37,7 +90,8 @@ public class JobConfig {
         private String type; // COUNTER, LINE_CHART, BAR_CHART
         private String column; // Column name in SQL result
         private String label;
-        private String xAxis; // For charts
-        private String yAxis; // For charts
+        private String xAxis; // For charts: group-by column
+        private String yAxis; // For charts: value column (defaults to column)
+        private String aggregation; // COUNT, SUM, AVG, MIN or MAX (default: COUNT without a column, else SUM)
     }
 }
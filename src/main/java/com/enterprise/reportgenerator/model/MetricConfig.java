@@ -13,4 +13,11 @@ public class MetricConfig {
     private String sqlQuery;
     private String type; // e.g., "number", "list" (for now just number)
     private String icon; // Icon name from Lucide
+    // Alternative to sqlQuery: a value precomputed by a job's dashboardMapping (no database query)
+    private String sourceJobId;
+    private String sourceMetricLabel;
+    // Collected history to keep, in days per resolution; null = app.metrics.history.retention.* default, 0 = forever
+    private Integer historyRawDays;
+    private Integer historyHourlyDays;
+    private Integer historyDailyDays;
 }
@@ -3,6 +3,7 @@ package com.enterprise.reportgenerator.model;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
@@ -12,10 +13,41 @@ public class Report {
     private String jobId;
     private String jobName;
     private String fileName;
+    private String format; // XLSX, CSV, CSV_GZIP or JSONL (null on older reports: XLSX)
     private String filePath;
+    private List<String> partFiles; // All files, first one = filePath, when the output was split
     private long generatedAt; // Timestamp
-    private String status; // SUCCESS, FAILED
+    private String status; // SUCCESS, FAILED, CANCELLED
     private int rowCount;
     private long fileSizeBytes;
     private String errorMessage; // If failed
+    private int fetchSize; // Effective JDBC fetch size
+    private long fetchRoundTrips; // Estimated fetch round trips (rowCount / fetchSize + 1)
+    private List<PartitionStat> partitions; // Only for partitioned runs
+    private List<QueryStat> queries; // Only for multi-query runs, in job order
+    private String cachedFromReportId; // Set when the file was reused from the result cache
+    private Long deltaRowCount; // Incremental runs: rows newer than the previous watermark
+    private String watermark; // Incremental runs: watermark after this run
+    private String burstKey; // Burst runs: value of the burst column this file holds
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PartitionStat {
+        private String fromDate;
+        private String toDate;
+        private long rowCount;
+        private long durationMs;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QueryStat {
+        private String sheetName;
+        private String sqlFileName;
+        private String targetDatabase;
+        private long rowCount;
+        private long durationMs;
+    }
 }
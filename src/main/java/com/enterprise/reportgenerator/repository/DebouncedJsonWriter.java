@@ -0,0 +1,168 @@
+package com.enterprise.reportgenerator.repository;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Group-commit persistence for the JSON file repositories. A repository changes
+ * its in-memory state and marks its file dirty; a background thread writes the
+ * file once app.persistence.write-delay-ms after the first change, so a burst of
+ * saves costs one write. Files are written to a temp sibling, forced and renamed
+ * over the original, so a crash leaves either the old or the new file. Pending
+ * writes are flushed on shutdown. A failed background write is logged and retried;
+ * an explicit {@link JsonFile#flush()} throws instead, so the caller knows the
+ * state is not durable.
+ */
+@Component
+@Slf4j
+public class DebouncedJsonWriter {
+
+    private final ObjectMapper objectMapper;
+    private final long delayMs;
+    private final List<JsonFile> files = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService executor;
+
+    public DebouncedJsonWriter(ObjectMapper objectMapper,
+            @Value("${app.persistence.write-delay-ms:500}") long delayMs) {
+        this.objectMapper = objectMapper;
+        this.delayMs = delayMs;
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("json-writer-"));
+    }
+
+    // Repositories depend on this bean, so they are destroyed first and nothing marks files dirty afterwards
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+    }
+
+    /**
+     * @param snapshot called on the writer thread; must return a consistent copy
+     *                 (or a thread-safe collection) of what the file should hold
+     */
+    public JsonFile register(Path path, Supplier<?> snapshot, boolean pretty) {
+        ObjectWriter writer = (pretty ? objectMapper.writerWithDefaultPrettyPrinter() : objectMapper.writer())
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        JsonFile file = new JsonFile(path, snapshot, writer);
+        files.add(file);
+        return file;
+    }
+
+    // Shutdown path: a failure is only logged, the remaining files are still written
+    public void flushAll() {
+        for (JsonFile file : files) {
+            file.flushOrRetry();
+        }
+    }
+
+    public class JsonFile {
+        private final Path path;
+        private final Supplier<?> snapshot;
+        private final ObjectWriter writer;
+        private final AtomicBoolean dirty = new AtomicBoolean();
+
+        private JsonFile(Path path, Supplier<?> snapshot, ObjectWriter writer) {
+            this.path = path;
+            this.snapshot = snapshot;
+            this.writer = writer;
+        }
+
+        // The first change after a write schedules the next one; later changes ride along
+        public void markDirty() {
+            if (!dirty.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.schedule(this::flushOrRetry, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                flushOrRetry(); // Shutting down: write on the caller's thread
+            }
+        }
+
+        /**
+         * Writes now if there are unwritten changes, for state that must be durable
+         * before going on. Throws UncheckedIOException when the write fails; the
+         * changes stay pending and the background retry keeps trying.
+         */
+        public void flush() {
+            try {
+                writeIfDirty();
+            } catch (IOException e) {
+                retryLater();
+                throw new UncheckedIOException("Failed to write " + path, e);
+            }
+        }
+
+        private void flushOrRetry() {
+            try {
+                writeIfDirty();
+            } catch (IOException e) {
+                log.error("Failed to write {}; retrying in {}ms", path, delayMs, e);
+                retryLater();
+            }
+        }
+
+        private synchronized void writeIfDirty() throws IOException {
+            // Cleared before the snapshot is taken, so a change made during the write schedules another
+            if (dirty.getAndSet(false)) {
+                write(snapshot.get());
+            }
+        }
+
+        private void retryLater() {
+            if (!executor.isShutdown()) {
+                markDirty();
+            }
+        }
+
+        private void write(Object value) throws IOException {
+            Path dir = path.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writer.writeValue(Channels.newOutputStream(channel), value);
+                channel.force(true);
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.enterprise.reportgenerator.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * In-memory entity store for the JSON repositories: constant-time, lock-free
+ * lookups by id, insertion order for listings, and an immutable snapshot for
+ * findAll that is rebuilt only on the first read after a change. Writes are
+ * serialized; an update keeps the entity's position.
+ */
+public class IdIndexedStore<T> {
+
+    private final Function<T, String> idOf;
+    private final Map<String, T> byId = new ConcurrentHashMap<>();
+    private final Map<String, T> ordered = new LinkedHashMap<>(); // Guarded by this
+    private volatile List<T> snapshot = List.of(); // null after a change until the next read
+
+    public IdIndexedStore(Function<T, String> idOf) {
+        this.idOf = idOf;
+    }
+
+    public Optional<T> get(String id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(byId.get(id));
+    }
+
+    public boolean contains(String id) {
+        return id != null && byId.containsKey(id);
+    }
+
+    // Unmodifiable, in insertion order; safe to iterate while others write
+    public List<T> values() {
+        List<T> current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    snapshot = Collections.unmodifiableList(new ArrayList<>(ordered.values()));
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    public synchronized void put(T entity) {
+        String id = idOf.apply(entity);
+        ordered.put(id, entity);
+        byId.put(id, entity);
+        snapshot = null;
+    }
+
+    public synchronized boolean remove(String id) {
+        if (ordered.remove(id) == null) {
+            return false;
+        }
+        byId.remove(id);
+        snapshot = null;
+        return true;
+    }
+
+    public synchronized void replaceAll(Collection<T> entities) {
+        ordered.clear();
+        byId.clear();
+        for (T entity : entities) {
+            String id = idOf.apply(entity);
+            ordered.put(id, entity);
+            byId.put(id, entity);
+        }
+        snapshot = null;
+    }
+}
@@ -9,22 +9,23 @@ import jakarta.annotation.PostConstruct;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 @Repository
 public class JsonConfigRepository {
 
     private final ObjectMapper objectMapper;
     private final String configFilePath;
-    private final List<JobConfig> jobsCache = new CopyOnWriteArrayList<>();
+    private final IdIndexedStore<JobConfig> jobsCache = new IdIndexedStore<>(JobConfig::getId);
+    private final DebouncedJsonWriter.JsonFile jobsFile;
 
-    public JsonConfigRepository(ObjectMapper objectMapper,
+    public JsonConfigRepository(ObjectMapper objectMapper, DebouncedJsonWriter jsonWriter,
             @Value("${app.config.jobs-path:config/jobs.json}") String configFilePath) {
         this.objectMapper = objectMapper;
         this.configFilePath = configFilePath;
+        this.jobsFile = jsonWriter.register(Paths.get(configFilePath), jobsCache::values, true);
     }
 
     @PostConstruct
@@ -38,42 +39,44 @@ public class JsonConfigRepository {
             try {
                 List<JobConfig> loadedJobs = objectMapper.readValue(file, new TypeReference<List<JobConfig>>() {
                 });
-                jobsCache.clear();
-                jobsCache.addAll(loadedJobs);
+                jobsCache.replaceAll(loadedJobs);
             } catch (IOException e) {
                 throw new RuntimeException("Failed to load job configs from " + configFilePath, e);
             }
         } else {
-            // Ensure directory exists
-            file.getParentFile().mkdirs();
-            saveConfigs(); // Create empty file
+            // Create empty file
+            saveConfigs();
+            flush();
         }
     }
 
-    private synchronized void saveConfigs() {
-        try {
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(configFilePath), jobsCache);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to save job configs", e);
-        }
+    // Memory is updated already; the file follows shortly, batched with other changes
+    private void saveConfigs() {
+        jobsFile.markDirty();
+    }
+
+    // Writes pending changes now, for state that must survive a crash (e.g. a committed watermark);
+    // throws UncheckedIOException when that fails
+    public void flush() {
+        jobsFile.flush();
     }
 
+    // Unmodifiable snapshot in insertion order
     public List<JobConfig> findAll() {
-        return new ArrayList<>(jobsCache);
+        return jobsCache.values();
     }
 
     public Optional<JobConfig> findById(String id) {
-        return jobsCache.stream().filter(j -> j.getId().equals(id)).findFirst();
+        return jobsCache.get(id);
     }
 
     public void save(JobConfig jobConfig) {
-        jobsCache.removeIf(j -> j.getId().equals(jobConfig.getId()));
-        jobsCache.add(jobConfig);
+        jobsCache.put(jobConfig);
         saveConfigs();
     }
 
     public void deleteById(String id) {
-        jobsCache.removeIf(j -> j.getId().equals(id));
+        jobsCache.remove(id);
         saveConfigs();
     }
 }
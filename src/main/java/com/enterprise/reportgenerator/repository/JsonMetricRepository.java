@@ -9,20 +9,26 @@ import org.springframework.stereotype.Repository;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 @Repository
 public class JsonMetricRepository {
 
-    @Value("${app.config.path:data/config}")
-    private String configPath;
+    private static final String CONFIG_FILE = "metrics.json";
 
-    private final String CONFIG_FILE = "metrics.json";
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private final List<MetricConfig> metrics = new CopyOnWriteArrayList<>();
+    private final String configPath;
+    private final ObjectMapper objectMapper;
+    private final IdIndexedStore<MetricConfig> metrics = new IdIndexedStore<>(MetricConfig::getId);
+    private final DebouncedJsonWriter.JsonFile metricsFile;
+
+    public JsonMetricRepository(ObjectMapper objectMapper, DebouncedJsonWriter jsonWriter,
+            @Value("${app.config.path:data/config}") String configPath) {
+        this.objectMapper = objectMapper;
+        this.configPath = configPath;
+        this.metricsFile = jsonWriter.register(Paths.get(configPath, CONFIG_FILE), metrics::values, false);
+    }
 
     @PostConstruct
     public void init() {
@@ -35,49 +41,38 @@ public class JsonMetricRepository {
             if (file.exists() && file.length() > 0) {
                 List<MetricConfig> loaded = objectMapper.readValue(file, new TypeReference<List<MetricConfig>>() {
                 });
-                metrics.clear();
-                if (loaded != null) {
-                    metrics.addAll(loaded);
-                }
+                metrics.replaceAll(loaded != null ? loaded : List.of());
             } else {
-                metrics.clear(); // Ensure empty if file is empty
+                metrics.replaceAll(List.of()); // Ensure empty if file is empty
             }
         } catch (IOException e) {
             e.printStackTrace();
             // Start with empty list if file is corrupt
-            metrics.clear();
+            metrics.replaceAll(List.of());
         }
     }
 
     private void saveMetrics() {
-        try {
-            File dir = new File(configPath);
-            if (!dir.exists())
-                dir.mkdirs();
-            File file = new File(dir, CONFIG_FILE);
-            objectMapper.writeValue(file, metrics);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        metricsFile.markDirty();
     }
 
+    // Unmodifiable snapshot in insertion order
     public List<MetricConfig> findAll() {
-        return new ArrayList<>(metrics);
+        return metrics.values();
     }
 
     public Optional<MetricConfig> findById(String id) {
-        return metrics.stream().filter(m -> m.getId().equals(id)).findFirst();
+        return metrics.get(id);
     }
 
     public MetricConfig save(MetricConfig metric) {
-        metrics.removeIf(m -> m.getId().equals(metric.getId()));
-        metrics.add(metric);
+        metrics.put(metric);
         saveMetrics();
         return metric;
     }
 
     public void deleteById(String id) {
-        metrics.removeIf(m -> m.getId().equals(id));
+        metrics.remove(id);
         saveMetrics();
     }
 }
@@ -1,98 +1,525 @@
 package com.enterprise.reportgenerator.repository;
 
 import com.enterprise.reportgenerator.model.Report;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Repository;
 
 import jakarta.annotation.PostConstruct;
-import java.io.File;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Reports live in memory, indexed by id, jobId and generatedAt. Every change is
+ * appended to a journal (one JSON line per put/delete) and written through to
+ * the OS immediately; fsync is batched on a short interval. Once the journal
+ * holds enough records it is sealed, a new one is started, and the current
+ * state is written to reports.json under a temp name and renamed into place,
+ * after which the sealed journals are deleted. Startup loads reports.json and
+ * replays whatever journals are left, ignoring a torn last line. Listing pages
+ * are served from the sorted indexes (see {@link #findPage}).
+ */
 @Repository
 @Slf4j
 public class JsonReportRepository {
 
+    private static final String PUT = "PUT";
+    private static final String DELETE = "DELETE";
+    private static final String MAX_ID = "\uffff"; // Sorts after every real id
+
     private final ObjectMapper objectMapper;
-    private final String reportsFilePath;
+    private final Path snapshotPath;
+    private final String journalPrefix;
+    private final long fsyncIntervalMs;
+    private final int compactThreshold;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, TimeKey> byId = new HashMap<>();
+    private final NavigableMap<TimeKey, Report> byTime = new TreeMap<>();
+    private final Map<String, TreeSet<TimeKey>> byJob = new HashMap<>();
+    private final Map<String, TreeSet<TimeKey>> byStatus = new HashMap<>();
+
+    // Guarded by the write lock
+    private FileChannel journal;
+    private long journalGeneration;
+    private int journalRecords;
+    private boolean unsynced;
+    private boolean compactionQueued;
+
+    private ScheduledExecutorService background;
 
     public JsonReportRepository(ObjectMapper objectMapper,
-            @Value("${app.config.data-path:data}/reports.json") String reportsFilePath) {
+            @Value("${app.config.data-path:data}/reports.json") String reportsFilePath,
+            @Value("${app.reports.journal.fsync-interval-ms:200}") long fsyncIntervalMs,
+            @Value("${app.reports.journal.compact-threshold:1000}") int compactThreshold) {
         this.objectMapper = objectMapper;
-        this.reportsFilePath = reportsFilePath;
+        this.snapshotPath = Paths.get(reportsFilePath);
+        this.journalPrefix = snapshotPath.getFileName() + ".journal.";
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.compactThreshold = compactThreshold;
     }
 
     @PostConstruct
-    public void init() {
-        File file = new File(reportsFilePath);
-        if (!file.exists()) {
-            try {
-                file.getParentFile().mkdirs();
-                file.createNewFile();
-                save(new ArrayList<>());
-            } catch (IOException e) {
-                log.error("Failed to create reports.json", e);
+    public void init() throws IOException {
+        Path dir = snapshotPath.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Files.deleteIfExists(tempSnapshotPath()); // Left by a compaction that never got to rename
+
+        if (Files.exists(snapshotPath) && Files.size(snapshotPath) > 0) {
+            List<Report> reports = objectMapper.readValue(snapshotPath.toFile(), new TypeReference<List<Report>>() {
+            });
+            for (Report report : reports) {
+                index(report);
             }
         }
-    }
+        List<Path> journals = listJournals();
+        int replayed = 0;
+        for (Path path : journals) {
+            replayed += replay(path);
+        }
+        journalGeneration = journals.isEmpty() ? 1 : generationOf(journals.get(journals.size() - 1)) + 1;
+        journal = openJournal();
+        log.info("Loaded {} reports ({} journal records replayed)", byId.size(), replayed);
 
-    private List<Report> load() {
-        try {
-            File file = new File(reportsFilePath);
-            if (!file.exists() || file.length() == 0) {
-                return new ArrayList<>();
-            }
-            return objectMapper.readValue(file, new TypeReference<List<Report>>() {
-            });
-        } catch (Exception e) {
-            log.error("Failed to load reports", e);
-            return new ArrayList<>();
+        // Fold the replayed records into reports.json so old journals don't pile up
+        if (!journals.isEmpty() || !Files.exists(snapshotPath)) {
+            compact();
         }
+
+        background = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("report-journal-"));
+        background.scheduleWithFixedDelay(this::syncJournal, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
     }
 
-    private void save(List<Report> reports) {
+    @PreDestroy
+    public void shutdown() {
+        background.shutdown();
+        try {
+            background.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        syncJournal();
+        compact();
+        lock.writeLock().lock();
         try {
-            objectMapper.writerWithDefaultPrettyPrinter()
-                    .writeValue(new File(reportsFilePath), reports);
+            journal.close();
         } catch (IOException e) {
-            log.error("Failed to save reports", e);
+            log.error("Failed to close report journal", e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public void saveReport(Report report) {
-        List<Report> reports = load();
-        reports.removeIf(r -> r.getId().equals(report.getId()));
-        reports.add(report);
-        save(reports);
+        // The store keeps its own copy, so later changes to the caller's object don't leak in
+        Report copy = objectMapper.convertValue(report, Report.class);
+        lock.writeLock().lock();
+        try {
+            append(new JournalRecord(PUT, copy.getId(), copy));
+            unindex(copy.getId());
+            index(copy);
+        } finally {
+            lock.writeLock().unlock();
+        }
         log.info("Report saved: {}", report.getId());
     }
 
+    // Oldest first
     public List<Report> findAll() {
-        return load();
+        List<Report> reports;
+        lock.readLock().lock();
+        try {
+            reports = new ArrayList<>(byTime.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return copiesOf(reports);
     }
 
     public Optional<Report> findById(String id) {
-        return load().stream()
-                .filter(r -> r.getId().equals(id))
-                .findFirst();
+        Report report;
+        lock.readLock().lock();
+        try {
+            TimeKey key = byId.get(id);
+            report = key == null ? null : byTime.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Optional.ofNullable(report).map(this::copyOf);
     }
 
+    // Oldest first
     public List<Report> findByJobId(String jobId) {
-        return load().stream()
-                .filter(r -> r.getJobId().equals(jobId))
-                .collect(Collectors.toList());
+        List<Report> reports;
+        lock.readLock().lock();
+        try {
+            TreeSet<TimeKey> keys = byJob.get(jobId);
+            if (keys == null) {
+                return new ArrayList<>();
+            }
+            reports = new ArrayList<>(keys.size());
+            for (TimeKey key : keys) {
+                reports.add(byTime.get(key));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return copiesOf(reports);
+    }
+
+    /**
+     * One page of reports in generatedAt order, read straight off the sorted
+     * indexes: the date range is a sub-range of the index and the cursor (the
+     * last key of the previous page) a further cut, so a page only costs the
+     * entries it returns plus those a second filter skips.
+     */
+    public ReportPage findPage(ReportPageRequest request) {
+        lock.readLock().lock();
+        try {
+            // Walk the narrower of the job and status indexes; the other one becomes a filter
+            NavigableSet<TimeKey> keys = byTime.navigableKeySet();
+            TreeSet<TimeKey> jobKeys = request.getJobId() == null ? null
+                    : byJob.getOrDefault(request.getJobId(), new TreeSet<>());
+            TreeSet<TimeKey> statusKeys = request.getStatus() == null ? null
+                    : byStatus.getOrDefault(request.getStatus().toUpperCase(), new TreeSet<>());
+            Set<TimeKey> filter = null;
+            if (jobKeys != null && statusKeys != null) {
+                keys = jobKeys.size() <= statusKeys.size() ? jobKeys : statusKeys;
+                filter = keys == jobKeys ? statusKeys : jobKeys;
+            } else if (jobKeys != null || statusKeys != null) {
+                keys = jobKeys != null ? jobKeys : statusKeys;
+            }
+
+            long from = request.getFrom() != null ? request.getFrom() : Long.MIN_VALUE;
+            long to = request.getTo() != null ? request.getTo() : Long.MAX_VALUE;
+            if (from > to) {
+                return new ReportPage(List.of(), null);
+            }
+            keys = keys.subSet(new TimeKey(from, ""), true, new TimeKey(to, MAX_ID), true);
+            TimeKey cursor = request.getCursor() != null ? TimeKey.decode(request.getCursor()) : null;
+            if (cursor != null) {
+                keys = request.isAscending() ? keys.tailSet(cursor, false) : keys.headSet(cursor, false);
+            }
+
+            Iterator<TimeKey> it = request.isAscending() ? keys.iterator() : keys.descendingIterator();
+            List<Report> items = new ArrayList<>(Math.min(request.getLimit(), 256));
+            TimeKey last = null;
+            while (items.size() < request.getLimit() && it.hasNext()) {
+                TimeKey key = it.next();
+                if (filter == null || filter.contains(key)) {
+                    items.add(byTime.get(key));
+                    last = key;
+                }
+            }
+            String nextCursor = items.size() == request.getLimit() && it.hasNext() ? last.encode() : null;
+            return new ReportPage(copiesOf(items), nextCursor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Readers get copies, so a change only reaches the store (and the indexes) through saveReport.
+    // Stored instances are never modified in place, so copying needs no lock.
+    private Report copyOf(Report report) {
+        return objectMapper.convertValue(report, Report.class);
+    }
+
+    private List<Report> copiesOf(List<Report> reports) {
+        List<Report> copies = new ArrayList<>(reports.size());
+        for (Report report : reports) {
+            copies.add(copyOf(report));
+        }
+        return copies;
     }
 
     public void deleteById(String id) {
-        List<Report> reports = load();
-        reports.removeIf(r -> r.getId().equals(id));
-        save(reports);
+        deleteAllById(List.of(id));
         log.info("Report deleted: {}", id);
     }
+
+    // One journal record per report, under a single lock acquisition
+    public int deleteAllById(Collection<String> ids) {
+        int deleted = 0;
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                if (byId.containsKey(id)) {
+                    append(new JournalRecord(DELETE, id, null));
+                    unindex(id);
+                    deleted++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (ids.size() > 1) {
+            log.info("Reports deleted: {}", deleted);
+        }
+        return deleted;
+    }
+
+    private void index(Report report) {
+        TimeKey key = new TimeKey(report.getGeneratedAt(), report.getId());
+        byId.put(report.getId(), key);
+        byTime.put(key, report);
+        if (report.getJobId() != null) {
+            byJob.computeIfAbsent(report.getJobId(), k -> new TreeSet<>()).add(key);
+        }
+        if (report.getStatus() != null) {
+            byStatus.computeIfAbsent(report.getStatus(), k -> new TreeSet<>()).add(key);
+        }
+    }
+
+    private void unindex(String id) {
+        TimeKey key = byId.remove(id);
+        if (key == null) {
+            return;
+        }
+        Report removed = byTime.remove(key);
+        if (removed != null) {
+            removeKey(byJob, removed.getJobId(), key);
+            removeKey(byStatus, removed.getStatus(), key);
+        }
+    }
+
+    private static void removeKey(Map<String, TreeSet<TimeKey>> index, String value, TimeKey key) {
+        TreeSet<TimeKey> keys = value != null ? index.get(value) : null;
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                index.remove(value);
+            }
+        }
+    }
+
+    // Caller holds the write lock. Written through to the OS, so only a machine crash inside one
+    // fsync interval can lose it; a failed write is logged like the old whole-file save was.
+    private void append(JournalRecord record) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(record);
+            ByteBuffer line = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n');
+            line.flip();
+            while (line.hasRemaining()) {
+                journal.write(line);
+            }
+            unsynced = true;
+            if (++journalRecords >= compactThreshold && !compactionQueued && background != null) {
+                compactionQueued = true;
+                background.execute(this::compact);
+            }
+        } catch (IOException e) {
+            log.error("Failed to append to report journal", e);
+        }
+    }
+
+    private void syncJournal() {
+        lock.writeLock().lock();
+        try {
+            if (unsynced) {
+                journal.force(false);
+                unsynced = false;
+            }
+        } catch (IOException e) {
+            log.error("Failed to sync report journal", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Seals the current journal and starts the next one (under the lock), then
+     * writes the state as of the seal to reports.json and drops the sealed journals.
+     */
+    private synchronized void compact() {
+        List<Report> snapshot;
+        long sealedUpTo;
+        lock.writeLock().lock();
+        try {
+            compactionQueued = false;
+            snapshot = new ArrayList<>(byTime.values());
+            journal.force(false);
+            journal.close();
+            sealedUpTo = journalGeneration;
+            journalGeneration++;
+            journal = openJournal();
+            journalRecords = 0;
+            unsynced = false;
+        } catch (IOException e) {
+            log.error("Failed to rotate report journal", e);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Path tmp = tempSnapshotPath();
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                // Not pretty-printed any more: the snapshot is rewritten in full and only read at startup
+                objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                        .writeValue(Channels.newOutputStream(channel), snapshot);
+                channel.force(true);
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (Path path : listJournals()) {
+                if (generationOf(path) <= sealedUpTo) {
+                    Files.deleteIfExists(path);
+                }
+            }
+            log.info("Compacted {} reports into {}", snapshot.size(), snapshotPath);
+        } catch (IOException e) {
+            // The sealed journals stay, so nothing is lost; the next compaction retries
+            log.error("Failed to compact reports into {}", snapshotPath, e);
+        }
+    }
+
+    private int replay(Path path) throws IOException {
+        int records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JournalRecord record;
+                try {
+                    record = objectMapper.readValue(line, JournalRecord.class);
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable record in {} (torn write?): {}", path, e.getMessage());
+                    continue;
+                }
+                unindex(record.getId());
+                if (PUT.equals(record.getOp()) && record.getReport() != null) {
+                    index(record.getReport());
+                }
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private FileChannel openJournal() throws IOException {
+        return FileChannel.open(journalPath(journalGeneration), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> listJournals() throws IOException {
+        try (Stream<Path> files = Files.list(snapshotPath.toAbsolutePath().getParent())) {
+            return files.filter(p -> p.getFileName().toString().startsWith(journalPrefix))
+                    .filter(p -> generationOf(p) > 0)
+                    .sorted((a, b) -> Long.compare(generationOf(a), generationOf(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private long generationOf(Path journalPath) {
+        try {
+            return Long.parseLong(journalPath.getFileName().toString().substring(journalPrefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Path journalPath(long generation) {
+        return snapshotPath.resolveSibling(journalPrefix + generation);
+    }
+
+    private Path tempSnapshotPath() {
+        return snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+    }
+
+    // Orders reports by generatedAt, ties broken by id
+    @lombok.Value
+    static class TimeKey implements Comparable<TimeKey> {
+        long generatedAt;
+        String id;
+
+        // Opaque page cursor: base64url of "generatedAt:id"
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((generatedAt + ":" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static TimeKey decode(String cursor) {
+            try {
+                String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int colon = text.indexOf(':');
+                return new TimeKey(Long.parseLong(text.substring(0, colon)), text.substring(colon + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int byTime = Long.compare(generatedAt, other.generatedAt);
+            return byTime != 0 ? byTime : id.compareTo(other.id);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReportPageRequest {
+        private String jobId; // null = all jobs
+        private String status; // SUCCESS, FAILED, CANCELLED; null = any
+        private Long from; // generatedAt bounds, inclusive
+        private Long to;
+        private boolean ascending; // false = newest first
+        private String cursor; // nextCursor of the previous page
+        private int limit;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class ReportPage {
+        private List<Report> items;
+        private String nextCursor; // null on the last page
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class JournalRecord {
+        private String op; // PUT or DELETE
+        private String id;
+        private Report report; // PUT only
+    }
 }
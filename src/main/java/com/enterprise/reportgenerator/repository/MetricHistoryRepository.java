@@ -0,0 +1,553 @@
+package com.enterprise.reportgenerator.repository;
+
+import com.enterprise.reportgenerator.model.MetricHistory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Collected metric values, one compressed, append-only series file per metric
+ * under ${app.config.path}/history (see MetricSeries), plus hourly and daily
+ * rollups (see MetricRollup) updated with every point. Adding a point is O(1):
+ * it is encoded onto the open block and folded into the current rollup buckets;
+ * fsync is batched every app.metrics.history.fsync-interval-ms. Range reads
+ * binary-search the block index; downsampled reads with a step of whole hours
+ * or days are answered from the rollups without touching raw points. A
+ * history.json left by earlier versions is imported once on startup and
+ * renamed to history.json.migrated.
+ */
+@Repository
+@Slf4j
+public class MetricHistoryRepository {
+
+    public static final long HOUR_MS = 3_600_000L;
+    public static final long DAY_MS = 24 * HOUR_MS;
+
+    private static final String LEGACY_FILE = "history.json";
+    private static final String HISTORY_DIR = "history";
+    private static final String RAW = "tsz";
+    private static final String HOURLY = "1h";
+    private static final String DAILY = "1d";
+    private static final Pattern HISTORY_FILE = Pattern.compile("(.+)\\.(\\d+)\\.(tsz|1h|1d)");
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9_-]{1,100}");
+
+    private final ObjectMapper objectMapper;
+    private final Path configPath;
+    private final Path historyDir;
+    private final long fsyncIntervalMs;
+    private final Map<String, MetricFiles> metrics = new ConcurrentHashMap<>();
+    private final Object compactionLock = new Object(); // One file rewrite at a time
+    private ScheduledExecutorService background;
+
+    public MetricHistoryRepository(ObjectMapper objectMapper,
+            @Value("${app.config.path:data/config}") String configPath,
+            @Value("${app.metrics.history.fsync-interval-ms:1000}") long fsyncIntervalMs) {
+        this.objectMapper = objectMapper;
+        this.configPath = Paths.get(configPath);
+        this.historyDir = this.configPath.resolve(HISTORY_DIR);
+        this.fsyncIntervalMs = fsyncIntervalMs;
+    }
+
+    public enum Aggregation {
+        AVG, MIN, MAX, LAST
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(historyDir);
+        loadFiles();
+        migrateLegacyFile();
+        long points = metrics.values().stream().mapToLong(m -> m.raw.size()).sum();
+        log.info("Loaded metric history: {} series, {} points", metrics.size(), points);
+
+        background = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("metric-history-"));
+        background.scheduleWithFixedDelay(this::syncAll, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        background.shutdown();
+        try {
+            background.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (MetricFiles m : metrics.values()) {
+            for (Closeable file : List.of(m.raw, m.hourly, m.daily)) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    log.error("Failed to close metric history file for {}", m.raw.getMetricId(), e);
+                }
+            }
+        }
+    }
+
+    private void loadFiles() throws IOException {
+        Map<String, MetricSeries> raws = new HashMap<>();
+        Map<String, MetricRollup> hourlies = new HashMap<>();
+        Map<String, MetricRollup> dailies = new HashMap<>();
+        for (Path file : newestGenerations()) {
+            String kind = kindOf(file);
+            try {
+                if (kind.equals(RAW)) {
+                    MetricSeries s = MetricSeries.open(file);
+                    raws.put(s.getMetricId(), s);
+                } else {
+                    MetricRollup r = MetricRollup.open(file);
+                    long expected = kind.equals(HOURLY) ? HOUR_MS : DAY_MS;
+                    if (r.getIntervalMs() != expected) {
+                        r.close();
+                        throw new IOException("Unexpected rollup interval " + r.getIntervalMs());
+                    }
+                    (kind.equals(HOURLY) ? hourlies : dailies).put(r.getMetricId(), r);
+                }
+            } catch (IOException e) {
+                // Set aside so the metric can start a fresh file
+                log.error("Unreadable metric history file {}; renaming it to .corrupt", file, e);
+                Files.move(file, file.resolveSibling(file.getFileName() + ".corrupt"),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Set<String> ids = new LinkedHashSet<>(raws.keySet());
+        ids.addAll(hourlies.keySet());
+        ids.addAll(dailies.keySet());
+        for (String id : ids) {
+            MetricFiles m = new MetricFiles(
+                    raws.containsKey(id) ? raws.get(id) : MetricSeries.create(pathOf(id, RAW), id),
+                    hourlies.containsKey(id) ? hourlies.get(id) : MetricRollup.create(pathOf(id, HOURLY), id, HOUR_MS),
+                    dailies.containsKey(id) ? dailies.get(id) : MetricRollup.create(pathOf(id, DAILY), id, DAY_MS));
+            reconcile(m);
+            metrics.put(id, m);
+        }
+    }
+
+    // Keeps the newest generation of each file; older ones are leftovers of an interrupted rewrite
+    private List<Path> newestGenerations() throws IOException {
+        Map<String, Path> newest = new HashMap<>();
+        Map<String, Long> generations = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(historyDir)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(".tmp")) {
+                    Files.delete(file); // A retention rewrite that never got to rename
+                    continue;
+                }
+                Matcher m = HISTORY_FILE.matcher(fileName);
+                if (!m.matches()) {
+                    continue;
+                }
+                String key = m.group(1) + "." + m.group(3);
+                long generation = Long.parseLong(m.group(2));
+                Long current = generations.get(key);
+                if (current != null && current > generation) {
+                    Files.delete(file);
+                    continue;
+                }
+                if (current != null) {
+                    Files.delete(newest.get(key));
+                }
+                generations.put(key, generation);
+                newest.put(key, file);
+            }
+        }
+        return new ArrayList<>(newest.values());
+    }
+
+    private static String kindOf(Path file) {
+        Matcher m = HISTORY_FILE.matcher(file.getFileName().toString());
+        return m.matches() ? m.group(3) : "";
+    }
+
+    private static Path nextGeneration(Path file) {
+        Matcher m = HISTORY_FILE.matcher(file.getFileName().toString());
+        if (!m.matches()) {
+            throw new IllegalStateException("Not a metric history file: " + file);
+        }
+        long generation = Long.parseLong(m.group(2)) + 1;
+        return file.resolveSibling(m.group(1) + "." + generation + "." + m.group(3));
+    }
+
+    /**
+     * Folds raw points newer than a rollup's last one into it: builds rollups for
+     * series written before they existed and repairs ones a crash left behind.
+     */
+    private static void reconcile(MetricFiles m) throws IOException {
+        for (MetricRollup rollup : List.of(m.hourly, m.daily)) {
+            long last = rollup.lastTimestamp();
+            if (last == Long.MAX_VALUE || m.raw.lastTimestamp() <= last) {
+                continue;
+            }
+            IOException[] failure = new IOException[1];
+            m.raw.scan(last + 1, Long.MAX_VALUE, (timestamp, value) -> {
+                try {
+                    rollup.add(timestamp, value);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+
+    private void migrateLegacyFile() throws IOException {
+        Path legacy = configPath.resolve(LEGACY_FILE);
+        if (!Files.exists(legacy)) {
+            return;
+        }
+        if (Files.size(legacy) > 0) {
+            List<MetricHistory> loaded = objectMapper.readValue(legacy.toFile(),
+                    new TypeReference<List<MetricHistory>>() {
+                    });
+            Map<String, List<MetricHistory>> byMetric = loaded == null ? Map.of()
+                    : loaded.stream().collect(Collectors.groupingBy(MetricHistory::getMetricId));
+            for (Map.Entry<String, List<MetricHistory>> entry : byMetric.entrySet()) {
+                MetricFiles m = metricFor(entry.getKey());
+                // Points already there were imported by a migration that stopped before the rename
+                long imported = m.raw.lastTimestamp();
+                List<MetricHistory> points = new ArrayList<>(entry.getValue());
+                points.sort(Comparator.comparingLong(MetricHistory::getTimestamp));
+                for (MetricHistory point : points) {
+                    if (point.getTimestamp() > imported) {
+                        m.append(point.getTimestamp(), point.getValue());
+                    }
+                }
+                m.sync();
+            }
+            log.info("Imported {} metric history points from {}", loaded == null ? 0 : loaded.size(), legacy);
+        }
+        Files.move(legacy, legacy.resolveSibling(LEGACY_FILE + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private MetricFiles metricFor(String metricId) {
+        return metrics.computeIfAbsent(metricId, id -> {
+            try {
+                return new MetricFiles(MetricSeries.create(pathOf(id, RAW), id),
+                        MetricRollup.create(pathOf(id, HOURLY), id, HOUR_MS),
+                        MetricRollup.create(pathOf(id, DAILY), id, DAY_MS));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private Path pathOf(String metricId, String kind) {
+        return historyDir.resolve(fileNameOf(metricId) + ".0." + kind);
+    }
+
+    // Readable for ordinary ids; anything else is sanitized and made unique with a hash of the id
+    static String fileNameOf(String metricId) {
+        if (SAFE_ID.matcher(metricId).matches()) {
+            return metricId;
+        }
+        String sanitized = metricId.replaceAll("[^A-Za-z0-9_-]", "_");
+        if (sanitized.length() > 60) {
+            sanitized = sanitized.substring(0, 60);
+        }
+        return sanitized + "~" + Integer.toHexString(metricId.hashCode());
+    }
+
+    private void syncAll() {
+        for (MetricFiles m : metrics.values()) {
+            try {
+                m.sync();
+            } catch (IOException e) {
+                log.error("Failed to sync metric history for {}", m.raw.getMetricId(), e);
+            }
+        }
+    }
+
+    public void add(MetricHistory entry) {
+        try {
+            if (!metricFor(entry.getMetricId()).append(entry.getTimestamp(), entry.getValue())) {
+                log.warn("Dropped out-of-order history point for metric {} at {}", entry.getMetricId(),
+                        entry.getTimestamp());
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to store history point for metric {}", entry.getMetricId(), e);
+        }
+    }
+
+    public void addAll(List<MetricHistory> entries) {
+        List<MetricHistory> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong(MetricHistory::getTimestamp));
+        for (MetricHistory entry : sorted) {
+            add(entry);
+        }
+    }
+
+    // In time order
+    public List<MetricHistory> findByMetricId(String metricId) {
+        return findRange(metricId, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /** Raw points with from &lt;= timestamp &lt;= to, in time order. */
+    public List<MetricHistory> findRange(String metricId, long from, long to) {
+        MetricFiles m = metrics.get(metricId);
+        List<MetricHistory> result = new ArrayList<>();
+        if (m == null) {
+            return result;
+        }
+        try {
+            m.raw.scan(from, to, (timestamp, value) -> result.add(new MetricHistory(metricId, timestamp, value)));
+        } catch (IOException e) {
+            log.error("Failed to read metric series {}", m.raw.getPath(), e);
+        }
+        return result;
+    }
+
+    /**
+     * One point per step-wide bucket that has data, stamped with the bucket start.
+     * Buckets are aligned to multiples of step since the epoch (UTC), so from is
+     * rounded down to the start of its bucket. Steps of whole days or hours are
+     * served from the rollups.
+     */
+    public List<MetricHistory> downsample(String metricId, long from, long to, long stepMs,
+            Aggregation aggregation) {
+        if (stepMs <= 0) {
+            throw new IllegalArgumentException("step must be positive");
+        }
+        Downsampler downsampler = new Downsampler(metricId, stepMs, aggregation);
+        MetricFiles m = metrics.get(metricId);
+        if (m == null) {
+            return downsampler.finish();
+        }
+        long start = from == Long.MIN_VALUE ? from : Math.floorDiv(from, stepMs) * stepMs;
+        long rawFrom = start;
+        MetricRollup rollup = stepMs % DAY_MS == 0 ? m.daily : stepMs % HOUR_MS == 0 ? m.hourly : null;
+        if (rollup != null) {
+            // Rollup buckets that end after 'to' would count later points; that part is read raw
+            long interval = rollup.getIntervalMs();
+            if (to == Long.MAX_VALUE) {
+                rollup.scan(start, to, downsampler::add);
+                return downsampler.finish();
+            }
+            long covered = Math.floorDiv(to + 1, interval) * interval;
+            rollup.scan(start, covered - 1, downsampler::add);
+            rawFrom = Math.max(start, covered);
+        }
+        try {
+            m.raw.scan(rawFrom, to, (timestamp, value) -> downsampler.add(timestamp, 1, value, value, value, value));
+        } catch (IOException e) {
+            log.error("Failed to read metric series {}", m.raw.getPath(), e);
+        }
+        return downsampler.finish();
+    }
+
+    public boolean hasHistory(String metricId) {
+        MetricFiles m = metrics.get(metricId);
+        return m != null && (!m.raw.isEmpty() || m.daily.size() > 0);
+    }
+
+    public Set<String> getMetricIds() {
+        return Set.copyOf(metrics.keySet());
+    }
+
+    // Newest point ever stored for the metric (rollups remember it after raw retention); Long.MIN_VALUE if none
+    public long lastTimestamp(String metricId) {
+        MetricFiles m = metrics.get(metricId);
+        if (m == null) {
+            return Long.MIN_VALUE;
+        }
+        return Math.max(m.raw.lastTimestamp(), Math.max(m.hourly.lastTimestamp(), m.daily.lastTimestamp()));
+    }
+
+    /**
+     * Deletes a metric's series and rollup files. Waits for an append in progress;
+     * a point added afterwards starts a new series. Returns false when there was none.
+     * The metric is only forgotten once its files are gone: if one cannot be deleted
+     * it stays registered (dropping new points) so a later call can finish the job,
+     * instead of a new series failing to create files that are still there.
+     */
+    public boolean delete(String metricId) throws IOException {
+        synchronized (compactionLock) {
+            MetricFiles m = metrics.get(metricId);
+            if (m == null) {
+                return false;
+            }
+            synchronized (m) {
+                m.deleted = true;
+                List<Path> files = List.of(m.raw.getPath(), m.hourly.getPath(), m.daily.getPath());
+                for (Closeable file : List.of(m.raw, m.hourly, m.daily)) {
+                    try {
+                        file.close();
+                    } catch (IOException e) {
+                        log.warn("Could not close metric history file of {}: {}", metricId, e.getMessage());
+                    }
+                }
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            metrics.remove(metricId, m);
+        }
+        log.info("Deleted metric history of {}", metricId);
+        return true;
+    }
+
+    /**
+     * Retention: each drop*Before rewrites one file into its next generation without
+     * the expired part (whole raw blocks, or buckets that ended at or before cutoff)
+     * and swaps it in. Reads and appends continue during the rewrite. Returns the
+     * number of points or buckets dropped; 0 when nothing had expired.
+     */
+    public long dropRawBefore(String metricId, long cutoff) throws IOException {
+        MetricFiles m = metrics.get(metricId);
+        if (m == null) {
+            return 0;
+        }
+        synchronized (compactionLock) {
+            return m.raw.dropBefore(cutoff, nextGeneration(m.raw.getPath()));
+        }
+    }
+
+    public long dropHourlyBefore(String metricId, long cutoff) throws IOException {
+        MetricFiles m = metrics.get(metricId);
+        if (m == null) {
+            return 0;
+        }
+        synchronized (compactionLock) {
+            return m.hourly.dropBefore(cutoff, nextGeneration(m.hourly.getPath()));
+        }
+    }
+
+    public long dropDailyBefore(String metricId, long cutoff) throws IOException {
+        MetricFiles m = metrics.get(metricId);
+        if (m == null) {
+            return 0;
+        }
+        synchronized (compactionLock) {
+            return m.daily.dropBefore(cutoff, nextGeneration(m.daily.getPath()));
+        }
+    }
+
+    private static final class MetricFiles {
+        private final MetricSeries raw;
+        private final MetricRollup hourly;
+        private final MetricRollup daily;
+        private boolean deleted; // Set under the lock once the files are closed
+
+        MetricFiles(MetricSeries raw, MetricRollup hourly, MetricRollup daily) {
+            this.raw = raw;
+            this.hourly = hourly;
+            this.daily = daily;
+        }
+
+        // Serialized per metric so the rollups see points in the order the series stored them
+        synchronized boolean append(long timestamp, double value) throws IOException {
+            if (deleted) {
+                return true; // The metric's history was deleted while this point was on its way
+            }
+            if (!raw.append(timestamp, value)) {
+                return false;
+            }
+            hourly.add(timestamp, value);
+            daily.add(timestamp, value);
+            return true;
+        }
+
+        synchronized void sync() throws IOException {
+            if (deleted) {
+                return;
+            }
+            raw.sync();
+            hourly.sync();
+            daily.sync();
+        }
+    }
+
+    // Merges time-ordered points or rollup buckets into step-wide buckets
+    private static final class Downsampler {
+        private final String metricId;
+        private final long stepMs;
+        private final Aggregation aggregation;
+        private final List<MetricHistory> result = new ArrayList<>();
+        private long bucket;
+        private long count;
+        private double sum;
+        private double min;
+        private double max;
+        private double last;
+
+        Downsampler(String metricId, long stepMs, Aggregation aggregation) {
+            this.metricId = metricId;
+            this.stepMs = stepMs;
+            this.aggregation = aggregation;
+        }
+
+        void add(long timestamp, long count, double sum, double min, double max, double last) {
+            long start = Math.floorDiv(timestamp, stepMs) * stepMs;
+            if (this.count == 0 || start != bucket) {
+                emit();
+                bucket = start;
+                this.count = count;
+                this.sum = sum;
+                this.min = min;
+                this.max = max;
+            } else {
+                this.count += count;
+                this.sum += sum;
+                this.min = Math.min(this.min, min);
+                this.max = Math.max(this.max, max);
+            }
+            this.last = last;
+        }
+
+        private void emit() {
+            if (count == 0) {
+                return;
+            }
+            double value;
+            switch (aggregation) {
+                case MIN:
+                    value = min;
+                    break;
+                case MAX:
+                    value = max;
+                    break;
+                case LAST:
+                    value = last;
+                    break;
+                default:
+                    value = sum / count;
+            }
+            result.add(new MetricHistory(metricId, bucket, value));
+        }
+
+        List<MetricHistory> finish() {
+            emit();
+            count = 0;
+            return result;
+        }
+    }
+}
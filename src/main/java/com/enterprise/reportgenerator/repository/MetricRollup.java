@@ -0,0 +1,288 @@
+package com.enterprise.reportgenerator.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Fixed-interval summary (count, sum, min, max, last) of one metric, e.g. per
+ * hour, kept up to date as points arrive. Buckets are aligned to multiples of
+ * the interval since the epoch (UTC). All buckets are held in primitive arrays;
+ * on disk each is a fixed-size record, and a new point only rewrites the record
+ * of its bucket.
+ * <pre>
+ * file:   int magic, long intervalMs, short idLength, id (UTF-8), record*
+ * record: long start, long lastTimestamp, long count, double sum, double min, double max, double last
+ * </pre>
+ */
+class MetricRollup implements Closeable {
+
+    private static final int MAGIC = 0x54535231; // "TSR1"
+    private static final int RECORD = 56;
+
+    private final String metricId;
+    private final long intervalMs;
+    private volatile Path path; // Both replaced when dropBefore swaps in a new generation
+    private FileChannel channel;
+    private final long dataOffset;
+
+    private long[] starts = new long[16];
+    private long[] lastTimestamps = new long[16];
+    private long[] counts = new long[16];
+    private double[] sums = new double[16];
+    private double[] mins = new double[16];
+    private double[] maxs = new double[16];
+    private double[] lasts = new double[16];
+    private int size;
+    private boolean unsynced;
+
+    private MetricRollup(String metricId, long intervalMs, Path path, FileChannel channel, long dataOffset) {
+        this.metricId = metricId;
+        this.intervalMs = intervalMs;
+        this.path = path;
+        this.channel = channel;
+        this.dataOffset = dataOffset;
+    }
+
+    static MetricRollup create(Path path, String metricId, long intervalMs) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long dataOffset = writeFileHeader(channel, metricId, intervalMs);
+        return new MetricRollup(metricId, intervalMs, path, channel, dataOffset);
+    }
+
+    private static long writeFileHeader(FileChannel channel, String metricId, long intervalMs) throws IOException {
+        byte[] id = metricId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(14 + id.length).putInt(MAGIC).putLong(intervalMs)
+                .putShort((short) id.length).put(id);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        return header.capacity();
+    }
+
+    static MetricRollup open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer fixed = readFully(channel, 0, 14);
+            if (fixed.getInt() != MAGIC) {
+                throw new IOException("Not a metric rollup file: " + path);
+            }
+            long intervalMs = fixed.getLong();
+            int idLength = fixed.getShort();
+            String metricId = StandardCharsets.UTF_8.decode(readFully(channel, 14, idLength)).toString();
+            MetricRollup rollup = new MetricRollup(metricId, intervalMs, path, channel, 14 + idLength);
+
+            int records = (int) ((channel.size() - rollup.dataOffset) / RECORD);
+            ByteBuffer data = readFully(channel, rollup.dataOffset, records * RECORD);
+            for (int i = 0; i < records; i++) {
+                rollup.appendBucket(data.getLong(), data.getLong(), data.getLong(), data.getDouble(),
+                        data.getDouble(), data.getDouble(), data.getDouble());
+            }
+            // A record cut short by a crash is dropped; the reconcile on load re-adds its points
+            channel.truncate(rollup.dataOffset + (long) records * RECORD);
+            return rollup;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    String getMetricId() {
+        return metricId;
+    }
+
+    long getIntervalMs() {
+        return intervalMs;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /** Folds a point into its bucket; points older than the newest folded one are ignored. */
+    synchronized void add(long timestamp, double value) throws IOException {
+        long start = Math.floorDiv(timestamp, intervalMs) * intervalMs;
+        if (size > 0 && timestamp < lastTimestamps[size - 1]) {
+            return;
+        }
+        int i = size - 1;
+        if (size > 0 && starts[i] == start) {
+            lastTimestamps[i] = timestamp;
+            counts[i]++;
+            sums[i] += value;
+            mins[i] = Math.min(mins[i], value);
+            maxs[i] = Math.max(maxs[i], value);
+            lasts[i] = value;
+        } else {
+            appendBucket(start, timestamp, 1, value, value, value, value);
+            i = size - 1;
+        }
+        writeRecord(channel, i, i);
+    }
+
+    private void appendBucket(long start, long lastTimestamp, long count, double sum, double min, double max,
+            double last) {
+        if (size == starts.length) {
+            int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            lastTimestamps = Arrays.copyOf(lastTimestamps, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxs = Arrays.copyOf(maxs, capacity);
+            lasts = Arrays.copyOf(lasts, capacity);
+        }
+        starts[size] = start;
+        lastTimestamps[size] = lastTimestamp;
+        counts[size] = count;
+        sums[size] = sum;
+        mins[size] = min;
+        maxs[size] = max;
+        lasts[size] = last;
+        size++;
+    }
+
+    // Bucket i goes to record slot (they differ only while dropBefore moves buckets down)
+    private void writeRecord(FileChannel to, int i, int slot) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD).putLong(starts[i]).putLong(lastTimestamps[i])
+                .putLong(counts[i]).putDouble(sums[i]).putDouble(mins[i]).putDouble(maxs[i]).putDouble(lasts[i]);
+        record.flip();
+        long position = dataOffset + (long) slot * RECORD;
+        while (record.hasRemaining()) {
+            to.write(record, position + record.position());
+        }
+        unsynced = true;
+    }
+
+    // Long.MIN_VALUE when empty
+    synchronized long lastTimestamp() {
+        return size == 0 ? Long.MIN_VALUE : lastTimestamps[size - 1];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /** Streams the buckets with from &lt;= start &lt;= to in time order; copied under the lock, read outside it. */
+    void scan(long from, long to, BucketConsumer consumer) {
+        long[] s;
+        long[] c;
+        double[] sum;
+        double[] min;
+        double[] max;
+        double[] last;
+        synchronized (this) {
+            int low = MetricSeries.lowerBound(starts, size, from);
+            int high = low;
+            while (high < size && starts[high] <= to) {
+                high++;
+            }
+            s = Arrays.copyOfRange(starts, low, high);
+            c = Arrays.copyOfRange(counts, low, high);
+            sum = Arrays.copyOfRange(sums, low, high);
+            min = Arrays.copyOfRange(mins, low, high);
+            max = Arrays.copyOfRange(maxs, low, high);
+            last = Arrays.copyOfRange(lasts, low, high);
+        }
+        for (int i = 0; i < s.length; i++) {
+            consumer.accept(s[i], c[i], sum[i], min[i], max[i], last[i]);
+        }
+    }
+
+    /**
+     * Drops the buckets that end at or before cutoff by writing the rest to target
+     * (a new generation of this file) and switching over to it; the old file is
+     * deleted. Finished buckets are copied without the lock; only the newest one,
+     * which may still change, is written under it. Returns the buckets dropped.
+     */
+    int dropBefore(long cutoff, Path target) throws IOException {
+        int drop;
+        int snapshotSize;
+        synchronized (this) {
+            drop = MetricSeries.lowerBound(starts, size, cutoff - intervalMs + 1);
+            if (drop == 0) {
+                return 0;
+            }
+            snapshotSize = size;
+        }
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            writeFileHeader(out, metricId, intervalMs);
+            long finished = Math.max(0, snapshotSize - 1 - drop);
+            for (long done = 0; done < finished * RECORD; ) {
+                out.position(dataOffset + done);
+                done += channel.transferTo(dataOffset + drop * (long) RECORD + done, finished * RECORD - done, out);
+            }
+            synchronized (this) {
+                for (int i = drop + (int) finished; i < size; i++) {
+                    writeRecord(out, i, i - drop);
+                }
+                out.force(true);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                FileChannel oldChannel = channel;
+                Path oldPath = path;
+                channel = out;
+                path = target;
+                shift(drop);
+                unsynced = false;
+                MetricSeries.retire(oldChannel, oldPath);
+            }
+            return drop;
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    private void shift(int drop) {
+        size -= drop;
+        System.arraycopy(starts, drop, starts, 0, size);
+        System.arraycopy(lastTimestamps, drop, lastTimestamps, 0, size);
+        System.arraycopy(counts, drop, counts, 0, size);
+        System.arraycopy(sums, drop, sums, 0, size);
+        System.arraycopy(mins, drop, mins, 0, size);
+        System.arraycopy(maxs, drop, maxs, 0, size);
+        System.arraycopy(lasts, drop, lasts, 0, size);
+    }
+
+    synchronized void sync() throws IOException {
+        if (unsynced) {
+            channel.force(false);
+            unsynced = false;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @FunctionalInterface
+    interface BucketConsumer {
+        void accept(long start, long count, double sum, double min, double max, double last);
+    }
+}
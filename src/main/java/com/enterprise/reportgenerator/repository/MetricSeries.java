@@ -0,0 +1,446 @@
+package com.enterprise.reportgenerator.repository;
+
+import com.enterprise.reportgenerator.util.TimeSeriesCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * History of one metric in a segment file of compressed blocks of up to
+ * BLOCK_POINTS points. Sealed blocks are never rewritten and are read through a
+ * read-only memory mapping; in memory only their index (offset, count, time
+ * range) is kept. The open block lives in primitive arrays and is also written
+ * to the end of the file after every point: new payload bytes first, then its
+ * header, so an interrupted write leaves at worst the previous, shorter block.
+ * <pre>
+ * file:  int magic, short idLength, id (UTF-8), block*
+ * block: int payloadLength, int count, long firstTimestamp, long lastTimestamp, payload
+ * </pre>
+ */
+@Slf4j
+class MetricSeries implements Closeable {
+
+    static final int BLOCK_POINTS = 1024;
+    private static final int MAGIC = 0x54535A31; // "TSZ1"
+    private static final int BLOCK_HEADER = 24;
+
+    private final String metricId;
+    private volatile Path path; // Both replaced when dropBefore swaps in a new generation
+    private FileChannel channel;
+
+    private final List<Block> blocks = new ArrayList<>(); // Sealed, in time order
+    private long openOffset; // Header position of the open block = end of the sealed region
+    private TimeSeriesCodec.Encoder encoder = new TimeSeriesCodec.Encoder();
+    private int writtenLength; // Payload bytes of the open block already in the file
+    private long[] headTimestamps = new long[16];
+    private double[] headValues = new double[16];
+    private int headCount;
+    private MappedByteBuffer mapped; // Covers [0, mapped.capacity()) of the sealed region
+    private boolean unsynced;
+
+    private MetricSeries(String metricId, Path path, FileChannel channel) {
+        this.metricId = metricId;
+        this.path = path;
+        this.channel = channel;
+    }
+
+    static MetricSeries create(Path path, String metricId) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MetricSeries series = new MetricSeries(metricId, path, channel);
+        series.openOffset = writeFileHeader(channel, metricId);
+        return series;
+    }
+
+    private static long writeFileHeader(FileChannel channel, String metricId) throws IOException {
+        byte[] id = metricId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(6 + id.length).putInt(MAGIC).putShort((short) id.length).put(id);
+        header.flip();
+        writeFully(channel, header, 0);
+        return header.capacity();
+    }
+
+    // Reads the block index; the last block becomes the open block again unless it is full
+    static MetricSeries open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            ByteBuffer fixed = readFully(channel, 0, 6);
+            if (fixed.getInt() != MAGIC) {
+                throw new IOException("Not a metric series file: " + path);
+            }
+            int idLength = fixed.getShort();
+            String metricId = StandardCharsets.UTF_8.decode(readFully(channel, 6, idLength)).toString();
+            MetricSeries series = new MetricSeries(metricId, path, channel);
+
+            long position = 6 + idLength;
+            while (position + BLOCK_HEADER <= size) {
+                ByteBuffer header = readFully(channel, position, BLOCK_HEADER);
+                int length = header.getInt();
+                int count = header.getInt();
+                long first = header.getLong();
+                long last = header.getLong();
+                if (length <= 0 || count <= 0 || count > BLOCK_POINTS) {
+                    break; // Torn header
+                }
+                long available = size - position - BLOCK_HEADER;
+                if (count == BLOCK_POINTS && length < available) {
+                    series.blocks.add(new Block(position, length, count, first, last));
+                    position += BLOCK_HEADER + length;
+                    continue;
+                }
+                // Last block: decode what made it to disk
+                int readable = (int) Math.min(length, available);
+                series.recoverTail(readFully(channel, position + BLOCK_HEADER, readable), count, last);
+                break;
+            }
+            series.openOffset = position;
+            // Drop anything unreadable past the last good block and rewrite the open block cleanly
+            channel.truncate(position);
+            if (series.headCount > 0) {
+                series.rebuildOpenBlock();
+            }
+            return series;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Keeps the points of the last block up to the recorded last timestamp, in order
+    private void recoverTail(ByteBuffer payload, int count, long last) {
+        TimeSeriesCodec.Decoder decoder = new TimeSeriesCodec.Decoder(payload, 0, count);
+        long previous = Long.MIN_VALUE;
+        try {
+            while (decoder.next()) {
+                long timestamp = decoder.getTimestamp();
+                if (timestamp < previous || timestamp > last) {
+                    break;
+                }
+                addToHead(timestamp, decoder.getValue());
+                previous = timestamp;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Payload shorter than its header claims: keep what decoded
+        }
+        if (headCount < count) {
+            log.warn("Metric series {}: recovered {} of {} points of the last block", path, headCount, count);
+        }
+    }
+
+    private void rebuildOpenBlock() throws IOException {
+        encoder = new TimeSeriesCodec.Encoder();
+        writtenLength = 0;
+        for (int i = 0; i < headCount; i++) {
+            encoder.add(headTimestamps[i], headValues[i]);
+        }
+        writeOpenBlock();
+        if (headCount == BLOCK_POINTS) {
+            seal();
+        }
+    }
+
+    String getMetricId() {
+        return metricId;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /** Appends a point; false (nothing stored) when it is older than the newest point. */
+    synchronized boolean append(long timestamp, double value) throws IOException {
+        if (timestamp < lastTimestamp()) {
+            return false;
+        }
+        encoder.add(timestamp, value);
+        addToHead(timestamp, value);
+        writeOpenBlock();
+        if (headCount == BLOCK_POINTS) {
+            seal();
+        }
+        return true;
+    }
+
+    private void addToHead(long timestamp, double value) {
+        if (headCount == headTimestamps.length) {
+            int capacity = Math.min(headTimestamps.length * 2, BLOCK_POINTS);
+            headTimestamps = Arrays.copyOf(headTimestamps, capacity);
+            headValues = Arrays.copyOf(headValues, capacity);
+        }
+        headTimestamps[headCount] = timestamp;
+        headValues[headCount] = value;
+        headCount++;
+    }
+
+    // The byte before the new ones may have gained bits; everything earlier is unchanged
+    private void writeOpenBlock() throws IOException {
+        int length = encoder.getByteLength();
+        int from = Math.max(0, writtenLength - 1);
+        writeFully(channel, ByteBuffer.wrap(encoder.getBuffer(), from, length - from),
+                openOffset + BLOCK_HEADER + from);
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER).putInt(length).putInt(encoder.getCount())
+                .putLong(encoder.getFirstTimestamp()).putLong(encoder.getLastTimestamp());
+        header.flip();
+        writeFully(channel, header, openOffset);
+        writtenLength = length;
+        unsynced = true;
+    }
+
+    private void seal() {
+        blocks.add(new Block(openOffset, writtenLength, headCount, encoder.getFirstTimestamp(),
+                encoder.getLastTimestamp()));
+        openOffset += BLOCK_HEADER + writtenLength;
+        encoder = new TimeSeriesCodec.Encoder();
+        writtenLength = 0;
+        headCount = 0;
+    }
+
+    /**
+     * Drops the sealed blocks that end before cutoff by copying the remaining ones
+     * to target (a new generation of this file) and switching over to it; the old
+     * file is deleted. The bulk copy runs without the lock, so appends and reads go
+     * on meanwhile; only blocks sealed during the copy and the open block are
+     * written under it. Returns the number of points dropped.
+     */
+    long dropBefore(long cutoff, Path target) throws IOException {
+        int drop;
+        List<Block> kept;
+        long dropped = 0;
+        synchronized (this) {
+            drop = firstBlockEndingAtOrAfter(cutoff);
+            if (drop == 0) {
+                return 0;
+            }
+            kept = new ArrayList<>(blocks.subList(drop, blocks.size()));
+            for (int i = 0; i < drop; i++) {
+                dropped += blocks.get(i).count;
+            }
+        }
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long position = writeFileHeader(out, metricId);
+            List<Block> copied = new ArrayList<>();
+            // Sealed blocks never change, so reading them from the old file needs no lock
+            for (Block block : kept) {
+                position = copyBlock(block, out, position, copied);
+            }
+            synchronized (this) {
+                for (Block block : blocks.subList(drop + kept.size(), blocks.size())) {
+                    position = copyBlock(block, out, position, copied);
+                }
+                long newOpenOffset = position;
+                if (writtenLength > 0) {
+                    ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER).putInt(writtenLength)
+                            .putInt(encoder.getCount()).putLong(encoder.getFirstTimestamp())
+                            .putLong(encoder.getLastTimestamp());
+                    header.flip();
+                    writeFully(out, header, position);
+                    writeFully(out, ByteBuffer.wrap(encoder.getBuffer(), 0, writtenLength), position + BLOCK_HEADER);
+                }
+                out.force(true);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+
+                FileChannel oldChannel = channel;
+                Path oldPath = path;
+                channel = out;
+                path = target;
+                blocks.clear();
+                blocks.addAll(copied);
+                openOffset = newOpenOffset;
+                mapped = null;
+                unsynced = false;
+                // Readers still holding the old mapping keep working; it stays valid after the file is gone
+                retire(oldChannel, oldPath);
+            }
+            return dropped;
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    // Past the point of no return: the new generation is live, so failures here are only logged
+    static void retire(FileChannel oldChannel, Path oldPath) {
+        try {
+            oldChannel.close();
+            Files.deleteIfExists(oldPath);
+        } catch (IOException e) {
+            log.warn("Could not remove replaced metric history file {}: {}", oldPath, e.getMessage());
+        }
+    }
+
+    private long copyBlock(Block block, FileChannel out, long position, List<Block> copied) throws IOException {
+        long length = BLOCK_HEADER + block.length;
+        for (long done = 0; done < length; ) {
+            out.position(position + done);
+            done += channel.transferTo(block.offset + done, length - done, out);
+        }
+        copied.add(new Block(position, block.length, block.count, block.firstTimestamp, block.lastTimestamp));
+        return position + length;
+    }
+
+    synchronized void sync() throws IOException {
+        if (unsynced) {
+            channel.force(false);
+            unsynced = false;
+        }
+    }
+
+    synchronized long size() {
+        long size = headCount;
+        for (Block block : blocks) {
+            size += block.count;
+        }
+        return size;
+    }
+
+    synchronized boolean isEmpty() {
+        return headCount == 0 && blocks.isEmpty();
+    }
+
+    // Long.MIN_VALUE when empty
+    synchronized long lastTimestamp() {
+        if (headCount > 0) {
+            return headTimestamps[headCount - 1];
+        }
+        return blocks.isEmpty() ? Long.MIN_VALUE : blocks.get(blocks.size() - 1).lastTimestamp;
+    }
+
+    /**
+     * Streams the points with from &lt;= timestamp &lt;= to in time order. The block
+     * list and open block are captured under the lock; decoding happens outside
+     * it, so a long read never holds up collection.
+     */
+    void scan(long from, long to, PointConsumer consumer) throws IOException {
+        List<Block> candidates;
+        ByteBuffer sealed;
+        long[] timestamps;
+        double[] values;
+        synchronized (this) {
+            int start = firstBlockEndingAtOrAfter(from);
+            candidates = new ArrayList<>();
+            for (int i = start; i < blocks.size() && blocks.get(i).firstTimestamp <= to; i++) {
+                candidates.add(blocks.get(i));
+            }
+            sealed = candidates.isEmpty() ? null : mapSealed();
+            timestamps = Arrays.copyOf(headTimestamps, headCount);
+            values = Arrays.copyOf(headValues, headCount);
+        }
+        for (Block block : candidates) {
+            TimeSeriesCodec.Decoder decoder = new TimeSeriesCodec.Decoder(sealed,
+                    (int) (block.offset + BLOCK_HEADER), block.count);
+            while (decoder.next()) {
+                long timestamp = decoder.getTimestamp();
+                if (timestamp > to) {
+                    return;
+                }
+                if (timestamp >= from) {
+                    consumer.accept(timestamp, decoder.getValue());
+                }
+            }
+        }
+        int i = lowerBound(timestamps, timestamps.length, from);
+        for (; i < timestamps.length && timestamps[i] <= to; i++) {
+            consumer.accept(timestamps[i], values[i]);
+        }
+    }
+
+    private int firstBlockEndingAtOrAfter(long from) {
+        int low = 0;
+        int high = blocks.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blocks.get(mid).lastTimestamp < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First index in sorted[0, length) whose value is >= key
+    static int lowerBound(long[] sorted, int length, long key) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Sealed bytes never change, so one mapping serves until the sealed region grows past it
+    private ByteBuffer mapSealed() throws IOException {
+        if (mapped == null || mapped.capacity() < openOffset) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, openOffset);
+        }
+        return mapped.duplicate();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        channel.close();
+        mapped = null;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    @FunctionalInterface
+    interface PointConsumer {
+        void accept(long timestamp, double value);
+    }
+
+    private static final class Block {
+        private final long offset;
+        private final int length;
+        private final int count;
+        private final long firstTimestamp;
+        private final long lastTimestamp;
+
+        Block(long offset, int length, int count, long firstTimestamp, long lastTimestamp) {
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = lastTimestamp;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.enterprise.reportgenerator.service;
+
+import com.enterprise.reportgenerator.model.JobConfig;
+import com.enterprise.reportgenerator.util.CsvReportWriter;
+import com.enterprise.reportgenerator.util.ReportWriter;
+import com.enterprise.reportgenerator.util.WatermarkTrackingWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes a job's dashboardMapping metrics from the rows of its run, so
+ * dashboards read precomputed values instead of querying the database again.
+ * Each metric keeps only running aggregates (and one per x value for charts),
+ * never the rows themselves.
+ * <p>
+ * COUNTER: {@code aggregation} of {@code column} over all rows (COUNT of rows
+ * when no column is given, SUM otherwise by default). LINE_CHART / BAR_CHART:
+ * rows grouped by {@code xAxis}, {@code aggregation} of {@code yAxis} per group,
+ * published as [{x, y}] (line charts ordered by x, bar charts in first-seen order).
+ */
+@Slf4j
+public class DashboardMetricAggregator implements ReportWriter {
+
+    // Distinct x values per chart; the rest is folded into one OTHER_GROUP point
+    static final int MAX_GROUPS = 1000;
+    static final String OTHER_GROUP = "(other)";
+
+    private final List<JobConfig.MetricConfig> configs;
+    private final List<Metric> metrics = new ArrayList<>();
+    private long rowCount;
+
+    public DashboardMetricAggregator(List<JobConfig.MetricConfig> configs) {
+        this.configs = configs;
+    }
+
+    /** The aggregator for a job with an enabled dashboard mapping, otherwise null. */
+    public static DashboardMetricAggregator forJob(JobConfig job) {
+        JobConfig.DashboardMapping mapping = job.getDashboardMapping();
+        if (mapping == null || !mapping.isEnabled() || mapping.getMetrics() == null
+                || mapping.getMetrics().isEmpty()) {
+            return null;
+        }
+        return new DashboardMetricAggregator(mapping.getMetrics());
+    }
+
+    @Override
+    public void writeHeader(String[] columns, int[] sqlTypes) {
+        metrics.clear();
+        for (JobConfig.MetricConfig config : configs) {
+            try {
+                metrics.add(new Metric(config, columns));
+            } catch (IllegalArgumentException e) {
+                // A bad mapping only loses its own metric, never the report
+                log.warn("Dashboard metric '{}' skipped: {}", config.getLabel(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void writeRow(Object[] values) {
+        for (Metric metric : metrics) {
+            metric.accept(values);
+        }
+        rowCount++;
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public List<MetricCache.MetricValue> getResults() {
+        long now = System.currentTimeMillis();
+        List<MetricCache.MetricValue> results = new ArrayList<>(metrics.size());
+        for (Metric metric : metrics) {
+            results.add(new MetricCache.MetricValue(metric.label(), metric.value(),
+                    metric.chart ? "CHART" : "COUNTER", metric.config, now));
+        }
+        return results;
+    }
+
+    private enum Aggregation {
+        COUNT, SUM, AVG, MIN, MAX
+    }
+
+    private static class Metric {
+        private final JobConfig.MetricConfig config;
+        private final boolean chart;
+        private final Aggregation aggregation;
+        private final int valueIndex; // -1: count rows
+        private final int xIndex;
+        private final Accumulator total = new Accumulator();
+        private final Map<String, Group> groups = new LinkedHashMap<>();
+        private Group other;
+
+        Metric(JobConfig.MetricConfig config, String[] columns) {
+            this.config = config;
+            String type = config.getType() != null ? config.getType().toUpperCase() : "COUNTER";
+            this.chart = type.equals("LINE_CHART") || type.equals("BAR_CHART");
+            if (!chart && !type.equals("COUNTER")) {
+                throw new IllegalArgumentException("unknown metric type " + config.getType());
+            }
+            String valueColumn = chart && config.getYAxis() != null ? config.getYAxis() : config.getColumn();
+            this.valueIndex = valueColumn == null || valueColumn.isBlank() ? -1 : indexOf(columns, valueColumn);
+            this.xIndex = chart ? indexOf(columns, config.getXAxis()) : -1;
+            this.aggregation = config.getAggregation() != null
+                    ? Aggregation.valueOf(config.getAggregation().toUpperCase())
+                    : valueIndex < 0 ? Aggregation.COUNT : Aggregation.SUM;
+            if (valueIndex < 0 && aggregation != Aggregation.COUNT) {
+                throw new IllegalArgumentException(aggregation + " needs a value column");
+            }
+        }
+
+        private static int indexOf(String[] columns, String column) {
+            if (column == null || column.isBlank()) {
+                throw new IllegalArgumentException("chart metrics need an xAxis column");
+            }
+            String name = WatermarkTrackingWriter.unquote(column);
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("column '" + column + "' is not part of the query result");
+        }
+
+        void accept(Object[] values) {
+            Object value = valueIndex < 0 ? Boolean.TRUE : values[valueIndex];
+            if (!chart) {
+                total.add(value);
+                return;
+            }
+            Object x = values[xIndex];
+            String key = CsvReportWriter.toText(x);
+            Group group = groups.get(key);
+            if (group == null) {
+                if (groups.size() < MAX_GROUPS) {
+                    group = new Group(x, key);
+                    groups.put(key, group);
+                } else {
+                    if (other == null) {
+                        other = new Group(null, OTHER_GROUP);
+                    }
+                    group = other;
+                }
+            }
+            group.accumulator.add(value);
+        }
+
+        String label() {
+            return config.getLabel() != null ? config.getLabel()
+                    : chart ? config.getXAxis() : config.getColumn() != null ? config.getColumn() : "Rows";
+        }
+
+        Object value() {
+            if (!chart) {
+                return total.result(aggregation);
+            }
+            List<Group> ordered = new ArrayList<>(groups.values());
+            if ("LINE_CHART".equalsIgnoreCase(config.getType())) {
+                ordered.sort(Metric::compareX);
+            }
+            if (other != null) {
+                ordered.add(other);
+            }
+            List<Map<String, Object>> points = new ArrayList<>(ordered.size());
+            for (Group group : ordered) {
+                Map<String, Object> point = new LinkedHashMap<>();
+                point.put("x", group.label);
+                point.put("y", group.accumulator.result(aggregation));
+                points.add(point);
+            }
+            return points;
+        }
+
+        // Numbers and dates in their natural order, anything else (and nulls, last) by text
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static int compareX(Group a, Group b) {
+            if (a.x == null || b.x == null) {
+                return a.x == null ? (b.x == null ? 0 : 1) : -1;
+            }
+            if (a.x instanceof Number && b.x instanceof Number) {
+                return new BigDecimal(a.x.toString()).compareTo(new BigDecimal(b.x.toString()));
+            }
+            if (a.x instanceof Comparable && a.x.getClass().isInstance(b.x)) {
+                return ((Comparable) a.x).compareTo(b.x);
+            }
+            return Comparator.<String>naturalOrder().compare(a.label, b.label);
+        }
+    }
+
+    private static class Group {
+        private final Object x; // First raw value, for ordering
+        private final String label;
+        private final Accumulator accumulator = new Accumulator();
+
+        Group(Object x, String label) {
+            this.x = x;
+            this.label = label;
+        }
+    }
+
+    private static class Accumulator {
+        private long count; // Non-null values
+        private long numbers; // Numeric values
+        private BigDecimal sum = BigDecimal.ZERO;
+        private BigDecimal min;
+        private BigDecimal max;
+
+        void add(Object value) {
+            if (value == null) {
+                return;
+            }
+            count++;
+            BigDecimal number = toDecimal(value);
+            if (number == null) {
+                return;
+            }
+            numbers++;
+            sum = sum.add(number);
+            if (min == null || number.compareTo(min) < 0) {
+                min = number;
+            }
+            if (max == null || number.compareTo(max) > 0) {
+                max = number;
+            }
+        }
+
+        Object result(Aggregation aggregation) {
+            switch (aggregation) {
+                case COUNT:
+                    return count;
+                case SUM:
+                    return sum.stripTrailingZeros();
+                case AVG:
+                    return numbers == 0 ? null : sum.divide(BigDecimal.valueOf(numbers), MathContext.DECIMAL64);
+                case MIN:
+                    return min;
+                default:
+                    return max;
+            }
+        }
+
+        private static BigDecimal toDecimal(Object value) {
+            if (value instanceof BigDecimal) {
+                return (BigDecimal) value;
+            }
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return BigDecimal.valueOf(((Number) value).longValue());
+            }
+            if (value instanceof Number) {
+                double d = ((Number) value).doubleValue();
+                return Double.isFinite(d) ? BigDecimal.valueOf(d) : null;
+            }
+            return null; // Text, dates: only counted
+        }
+    }
+}
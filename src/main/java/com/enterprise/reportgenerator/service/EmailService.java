@@ -26,6 +26,13 @@ public class EmailService {
     private boolean mockEmail;
 
     public void sendReportEmail(List<String> recipients, String subject, String body, File attachment) {
+        sendReportEmailWithAttachments(recipients, subject, body,
+                attachment != null ? List.of(attachment) : List.of());
+    }
+
+    // Reports split into part files are sent as one mail with every part attached
+    public void sendReportEmailWithAttachments(List<String> recipients, String subject, String body,
+            List<File> attachments) {
         if (recipients == null || recipients.isEmpty()) {
             log.warn("No recipients defined for email.");
             return;
@@ -36,7 +43,7 @@ public class EmailService {
             log.info("To: {}", recipients);
             log.info("Subject: {}", subject);
             log.info("Body: {}", body);
-            if (attachment != null) {
+            for (File attachment : attachments) {
                 log.info("Attachment: {}", attachment.getName());
             }
             log.info("============================================");
@@ -52,8 +59,10 @@ public class EmailService {
             helper.setSubject(subject);
             helper.setText(body);
 
-            if (attachment != null && attachment.exists()) {
-                helper.addAttachment(attachment.getName(), attachment);
+            for (File attachment : attachments) {
+                if (attachment.exists()) {
+                    helper.addAttachment(attachment.getName(), attachment);
+                }
             }
 
             mailSender.send(message);
@@ -0,0 +1,11 @@
+package com.enterprise.reportgenerator.service;
+
+/**
+ * Thrown inside a job run once it has been cancelled through the cancel endpoints.
+ */
+public class ExecutionCancelledException extends RuntimeException {
+
+    public ExecutionCancelledException(String reportId) {
+        super("Execution " + reportId + " was cancelled");
+    }
+}
@@ -0,0 +1,279 @@
+package com.enterprise.reportgenerator.service;
+
+import com.enterprise.reportgenerator.model.JobConfig;
+import com.enterprise.reportgenerator.repository.JsonConfigRepository;
+import com.enterprise.reportgenerator.util.ReportWriter;
+import com.enterprise.reportgenerator.util.RowSpool;
+import com.enterprise.reportgenerator.util.TeeReportWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watermark-based incremental extraction. A job with a watermarkColumn only
+ * fetches rows whose watermark is above the value stored after its last
+ * successful run. Rows of every run are also kept as an append-only segment, from
+ * which the cumulative file is rebuilt without touching the database; segments
+ * are periodically folded into one base file.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IncrementalReportService {
+
+    public static final String WATERMARK_PARAM = "LastWatermark";
+
+    private static final Pattern SIMPLE_IDENTIFIER = Pattern.compile("[A-Za-z][A-Za-z0-9_$#]*");
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String BASE_PREFIX = "base-";
+
+    private final JsonConfigRepository jobRepository;
+
+    @Value("${app.config.output-path:data/reports}")
+    private String outputBasePath;
+
+    @Value("${app.incremental.compact-after-segments:10}")
+    private int compactAfterSegments;
+
+    public static boolean isIncremental(JobConfig job) {
+        return job.getWatermarkColumn() != null && !job.getWatermarkColumn().isBlank();
+    }
+
+    public static boolean writesDelta(JobConfig job) {
+        return !"CUMULATIVE".equalsIgnoreCase(job.getIncrementalOutput());
+    }
+
+    public static boolean writesCumulative(JobConfig job) {
+        return "CUMULATIVE".equalsIgnoreCase(job.getIncrementalOutput())
+                || "BOTH".equalsIgnoreCase(job.getIncrementalOutput());
+    }
+
+    /**
+     * maxRows does not apply to incremental jobs: without an order the capped delta
+     * would be an arbitrary subset of the new rows (and with one, rows sharing the
+     * last watermark value could still be cut), and the watermark would then move
+     * past the rows that were left out. Returns null for them.
+     */
+    public static Integer effectiveMaxRows(JobConfig job) {
+        return isIncremental(job) ? null : job.getMaxRows();
+    }
+
+    /**
+     * Returns the SQL restricted to rows newer than the stored watermark and binds
+     * :LastWatermark. Queries that reference :LastWatermark themselves are used as
+     * is (they must cope with a null on the first run); others are wrapped in an
+     * outer filter on the watermark column, which is skipped on the first run.
+     */
+    public String prepareQuery(JobConfig job, String sql, Map<String, Object> params) {
+        Object watermark = parseWatermark(job);
+        if (job.getMaxRows() != null && job.getMaxRows() > 0) {
+            log.warn("Job {} is incremental; ignoring maxRows ({}) so no new row is skipped", job.getName(),
+                    job.getMaxRows());
+        }
+        if (sql.contains(":" + WATERMARK_PARAM)) {
+            params.put(WATERMARK_PARAM, watermark);
+            return sql;
+        }
+        if (watermark == null) {
+            log.info("Job {} has no watermark yet; running a full extract", job.getName());
+            return sql;
+        }
+
+        params.put(WATERMARK_PARAM, watermark);
+        String column = job.getWatermarkColumn().trim();
+        if (!column.startsWith("\"") && !SIMPLE_IDENTIFIER.matcher(column).matches()) {
+            column = "\"" + column + "\"";
+        }
+        String inner = sql.trim();
+        if (inner.endsWith(";")) {
+            inner = inner.substring(0, inner.length() - 1);
+        }
+        log.info("Job {} extracting rows with {} > {}", job.getName(), column, job.getLastWatermark());
+        return "SELECT * FROM (\n" + inner + "\n) wm WHERE wm." + column + " > :" + WATERMARK_PARAM;
+    }
+
+    private Object parseWatermark(JobConfig job) {
+        String value = job.getLastWatermark();
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        String type = job.getWatermarkType() != null ? job.getWatermarkType().toUpperCase() : "STRING";
+        switch (type) {
+            case "TIMESTAMP":
+                return Timestamp.valueOf(LocalDateTime.parse(value));
+            case "NUMBER":
+                return new BigDecimal(value);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Persists the new high-water mark after a successful run. The job is re-read
+     * so edits made while the run was going are not overwritten. Returns the
+     * watermark now in effect; on failure the previous one stays in effect.
+     */
+    public String commitWatermark(String jobId, Object max) {
+        Optional<JobConfig> current = jobRepository.findById(jobId);
+        if (max == null || current.isEmpty()) {
+            return current.map(JobConfig::getLastWatermark).orElse(null); // No new rows, keep the previous one
+        }
+        JobConfig job = current.get();
+        String previousType = job.getWatermarkType();
+        String previousWatermark = job.getLastWatermark();
+        if (max instanceof Timestamp) {
+            job.setWatermarkType("TIMESTAMP");
+            job.setLastWatermark(((Timestamp) max).toLocalDateTime().toString()); // Keeps sub-millisecond precision
+        } else if (max instanceof java.util.Date) {
+            job.setWatermarkType("TIMESTAMP");
+            job.setLastWatermark(new Timestamp(((java.util.Date) max).getTime()).toLocalDateTime().toString());
+        } else if (max instanceof Number) {
+            job.setWatermarkType("NUMBER");
+            job.setLastWatermark(new BigDecimal(max.toString()).toPlainString());
+        } else {
+            job.setWatermarkType("STRING");
+            job.setLastWatermark(max.toString());
+        }
+        try {
+            jobRepository.save(job);
+            jobRepository.flush(); // Durable before the run's output is published, or the next run re-fetches
+        } catch (RuntimeException e) {
+            // Not advanced after all: the next run fetches these rows again
+            job.setWatermarkType(previousType);
+            job.setLastWatermark(previousWatermark);
+            throw e;
+        }
+        log.info("Job {} watermark advanced to {}", job.getName(), job.getLastWatermark());
+        return job.getLastWatermark();
+    }
+
+    // Segment for this run's rows; written under a temporary name until the run succeeds
+    public Path newSegmentPath(JobConfig job) throws IOException {
+        Path dir = segmentDir(job);
+        Files.createDirectories(dir);
+        return dir.resolve(SEGMENT_PREFIX + System.currentTimeMillis() + ".bin.tmp");
+    }
+
+    // Called once every output of the run is written, right before commitWatermark;
+    // the caller deletes the returned segment if that fails
+    public Path commitSegment(Path tempSegment) throws IOException {
+        String name = tempSegment.getFileName().toString().replace(".tmp", "");
+        return Files.move(tempSegment, tempSegment.resolveSibling(name), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Rebuilds the cumulative output from the base and all later committed segments,
+     * oldest first, followed by pendingSegment (this run's rows, not committed yet;
+     * may be null). Once there are compactAfterSegments committed files, the same
+     * pass also folds them into a new base, so the folder does not grow by one file
+     * per run; the pending segment is never folded in, so the base stays valid
+     * whether or not this run goes on to commit. Returns false when there is
+     * nothing to write yet.
+     */
+    public boolean writeCumulative(JobConfig job, ReportWriter writer, Path pendingSegment) throws IOException {
+        List<Path> segments = listSegments(job);
+        if (segments.isEmpty() && pendingSegment == null) {
+            return false;
+        }
+        boolean compact = compactAfterSegments > 0 && segments.size() >= compactAfterSegments;
+        Path newest = compact ? segments.get(segments.size() - 1) : null;
+        Path baseTmp = compact ? newest.resolveSibling(BASE_PREFIX + millisOf(newest) + ".bin.tmp") : null;
+        try (RowSpool base = compact ? new RowSpool(baseTmp) : null) {
+            ReportWriter target = base != null ? new TeeReportWriter(List.of(writer, base)) : writer;
+            boolean first = true;
+            for (Path segment : segments) {
+                RowSpool.replay(segment, target, first);
+                first = false;
+            }
+            if (base != null) {
+                base.finish();
+            }
+            if (pendingSegment != null) {
+                RowSpool.replay(pendingSegment, writer, first);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (baseTmp != null) {
+                Files.deleteIfExists(baseTmp);
+            }
+            throw e;
+        }
+        log.info("Cumulative output of job {} rebuilt from {} segment(s), {} rows", job.getName(),
+                segments.size() + (pendingSegment != null ? 1 : 0), writer.getRowCount());
+        if (compact) {
+            commitBase(job, baseTmp, millisOf(newest));
+        }
+        return true;
+    }
+
+    // The new base replaces everything up to its timestamp; a crash before the old files are gone is harmless
+    private void commitBase(JobConfig job, Path baseTmp, long upTo) throws IOException {
+        Path base = Files.move(baseTmp, baseTmp.resolveSibling(BASE_PREFIX + upTo + ".bin"),
+                StandardCopyOption.ATOMIC_MOVE);
+        int removed = 0;
+        try (Stream<Path> files = Files.list(base.getParent())) {
+            for (Path file : files.collect(Collectors.toList())) {
+                // Superseded files, and leftovers of crashed runs (a run in progress has a newer timestamp)
+                if (!file.equals(base) && millisOf(file) <= upTo) {
+                    Files.deleteIfExists(file);
+                    removed++;
+                }
+            }
+        }
+        log.info("Compacted cumulative segments of job {} into {} ({} file(s) removed)", job.getName(),
+                base.getFileName(), removed);
+    }
+
+    // The newest base, then the segments written after it
+    private List<Path> listSegments(JobConfig job) throws IOException {
+        Path dir = segmentDir(job);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(".bin")).collect(Collectors.toList());
+        }
+        Path base = files.stream()
+                .filter(p -> p.getFileName().toString().startsWith(BASE_PREFIX))
+                .max(Comparator.comparingLong(IncrementalReportService::millisOf))
+                .orElse(null);
+        long after = base != null ? millisOf(base) : Long.MIN_VALUE;
+        List<Path> segments = new ArrayList<>();
+        if (base != null) {
+            segments.add(base);
+        }
+        files.stream()
+                .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX) && millisOf(p) > after)
+                .sorted(Comparator.comparingLong(IncrementalReportService::millisOf))
+                .forEach(segments::add);
+        return segments;
+    }
+
+    // seg-<millis>.bin / base-<millis>.bin (plus .tmp while being written)
+    private static long millisOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+    }
+
+    private Path segmentDir(JobConfig job) {
+        return Paths.get(outputBasePath, "cumulative", job.getId());
+    }
+}
@@ -0,0 +1,366 @@
+package com.enterprise.reportgenerator.service;
+
+import com.enterprise.reportgenerator.model.JobConfig;
+import com.enterprise.reportgenerator.model.Report;
+import com.enterprise.reportgenerator.repository.JsonConfigRepository;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single entry point for running jobs, used by both manual triggers and cron.
+ * Each target database gets its own fixed worker pool (how many runs go at once)
+ * and bounded queue; once the queue is full, submissions are rejected. A run may
+ * open several sessions (partitions, multi-query sheets), so the workers do not
+ * bound Oracle sessions: StreamingQueryExecutor caps those per database, per statement.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobExecutionEngine {
+
+    private static final long STREAM_HANDOVER_SECONDS = 60;
+
+    private final JobExecutionService jobExecutionService;
+    private final JsonConfigRepository jobRepository;
+    private final RunningExecutionRegistry executionRegistry;
+
+    @Value("${app.execution.primary.max-concurrent:4}")
+    private int primaryWorkers;
+
+    @Value("${app.execution.secondary.max-concurrent:2}")
+    private int secondaryWorkers;
+
+    @Value("${app.execution.queue-capacity:20}")
+    private int queueCapacity;
+
+    private final Map<String, Flight> flights = new HashMap<>();
+
+    private ThreadPoolExecutor primaryPool;
+    private ThreadPoolExecutor secondaryPool;
+
+    @PostConstruct
+    public void init() {
+        primaryPool = createPool(primaryWorkers, "job-primary-");
+        secondaryPool = createPool(secondaryWorkers, "job-secondary-");
+        log.info("Job execution engine started (PRIMARY workers: {}, SECONDARY workers: {}, queue capacity: {})",
+                primaryWorkers, secondaryWorkers, queueCapacity);
+    }
+
+    private ThreadPoolExecutor createPool(int workers, String threadPrefix) {
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(threadPrefix),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        primaryPool.shutdown();
+        secondaryPool.shutdown();
+        primaryPool.awaitTermination(30, TimeUnit.SECONDS);
+        secondaryPool.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queues a job run. Never blocks the caller: the result says whether the run
+     * started right away, is waiting for a worker, or was rejected because the
+     * queue for its database is full.
+     * <p>
+     * Runs are single-flight per job: while one is in progress, a new trigger either
+     * attaches to it (ATTACH) or books exactly one follow-up run (FOLLOW_UP),
+     * according to the job's concurrentRunPolicy.
+     */
+    public Submission submit(String jobId, String trigger) {
+        JobConfig job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Job not found: " + jobId));
+
+        synchronized (flights) {
+            Flight flight = flights.get(jobId);
+            if (flight == null) {
+                flight = new Flight(newRun());
+                flights.put(jobId, flight);
+                Submission submission = dispatch(job, flight.current, trigger);
+                if (submission.getStatus() == Status.REJECTED) {
+                    flights.remove(jobId);
+                }
+                return submission;
+            }
+
+            if ("FOLLOW_UP".equalsIgnoreCase(job.getConcurrentRunPolicy())) {
+                if (flight.followUp == null) {
+                    flight.followUp = newRun();
+                    log.info("Job {} is already running; booked one follow-up run ({})", job.getName(), trigger);
+                    return new Submission(Status.FOLLOW_UP, databaseOf(job), flight.followUp.reportId, 0,
+                            flight.followUp.result);
+                }
+                log.info("Job {} already has a follow-up run booked; {} trigger attaches to it", job.getName(),
+                        trigger);
+                return new Submission(Status.ATTACHED, databaseOf(job), flight.followUp.reportId, 0,
+                        flight.followUp.result);
+            }
+
+            log.info("Job {} is already running; {} trigger attaches to report {}", job.getName(), trigger,
+                    flight.current.reportId);
+            return new Submission(Status.ATTACHED, databaseOf(job), flight.current.reportId, 0,
+                    flight.current.result);
+        }
+    }
+
+    private Submission dispatch(JobConfig job, Run run, String trigger) {
+        String database = databaseOf(job);
+        ThreadPoolExecutor pool = poolOf(database);
+
+        boolean mustWait = pool.getActiveCount() >= pool.getMaximumPoolSize() || !pool.getQueue().isEmpty();
+        executionRegistry.register(run.reportId, job.getId(), job.getName()); // Cancellable while queued
+        try {
+            pool.execute(() -> {
+                try {
+                    run.result.complete(jobExecutionService.executeJob(job.getId(), run.reportId));
+                } catch (Exception e) {
+                    log.error("Unhandled error running job {} ({})", job.getId(), trigger, e);
+                    run.result.completeExceptionally(e);
+                } finally {
+                    onRunFinished(job.getId());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Rejected {} run of job {}: {} queue is full ({} waiting)", trigger, job.getName(), database,
+                    pool.getQueue().size());
+            executionRegistry.unregister(run.reportId);
+            run.result.completeExceptionally(e);
+            return new Submission(Status.REJECTED, database, run.reportId, pool.getQueue().size(), run.result);
+        }
+
+        if (mustWait) {
+            log.info("Queued {} run of job {} on {} ({} waiting)", trigger, job.getName(), database,
+                    pool.getQueue().size());
+            return new Submission(Status.QUEUED, database, run.reportId, pool.getQueue().size(), run.result);
+        }
+        log.info("Started {} run of job {} on {}", trigger, job.getName(), database);
+        return new Submission(Status.STARTED, database, run.reportId, 0, run.result);
+    }
+
+    /**
+     * Books a worker of the job's database for a streamed download, so it counts against
+     * the same concurrency cap and queue as every other run. Streams are not single-flight:
+     * each caller gets its own bytes. The task runs once the response stream is handed over
+     * with StreamSlot.write; the slot comes back rejected when the queue is full.
+     */
+    public StreamSlot submitStream(JobConfig job, String reportId, StreamTask task) {
+        String database = databaseOf(job);
+        ThreadPoolExecutor pool = poolOf(database);
+        StreamSlot slot = new StreamSlot(database);
+        executionRegistry.register(reportId, job.getId(), job.getName()); // Cancellable while queued
+        try {
+            pool.execute(() -> {
+                try {
+                    // The response is handed over as soon as the controller returns
+                    task.run(slot.response.get(STREAM_HANDOVER_SECONDS, TimeUnit.SECONDS));
+                    slot.done.complete(null);
+                } catch (Exception e) {
+                    slot.done.completeExceptionally(e);
+                } finally {
+                    executionRegistry.unregister(reportId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Rejected streamed run of job {}: {} queue is full ({} waiting)", job.getName(), database,
+                    pool.getQueue().size());
+            executionRegistry.unregister(reportId);
+            slot.rejected = true;
+        }
+        return slot;
+    }
+
+    private void onRunFinished(String jobId) {
+        synchronized (flights) {
+            Flight flight = flights.get(jobId);
+            if (flight == null) {
+                return;
+            }
+            if (flight.followUp == null) {
+                flights.remove(jobId);
+                return;
+            }
+
+            flight.current = flight.followUp;
+            flight.followUp = null;
+            Optional<JobConfig> job = jobRepository.findById(jobId);
+            if (job.isEmpty()) {
+                flight.current.result.complete(null);
+                flights.remove(jobId);
+                return;
+            }
+            Submission submission = dispatch(job.get(), flight.current, "FOLLOW_UP");
+            if (submission.getStatus() == Status.REJECTED) {
+                flights.remove(jobId);
+            }
+        }
+    }
+
+    /**
+     * Cancels every queued or running execution of the job, plus any booked follow-up.
+     * Returns how many executions were cancelled.
+     */
+    public int cancelJob(String jobId) {
+        int cancelled = 0;
+        synchronized (flights) {
+            Flight flight = flights.get(jobId);
+            if (flight != null && flight.followUp != null) {
+                flight.followUp.result.completeExceptionally(new CancellationException("Follow-up run cancelled"));
+                flight.followUp = null;
+                cancelled++;
+            }
+        }
+        for (RunningExecutionRegistry.RunningExecution execution : executionRegistry.findByJobId(jobId)) {
+            if (executionRegistry.cancel(execution.getReportId())) {
+                cancelled++;
+            }
+        }
+        log.info("Cancelled {} execution(s) of job {}", cancelled, jobId);
+        return cancelled;
+    }
+
+    public boolean cancelExecution(String reportId) {
+        synchronized (flights) {
+            for (Flight flight : flights.values()) {
+                if (flight.followUp != null && flight.followUp.reportId.equals(reportId)) {
+                    flight.followUp.result.completeExceptionally(new CancellationException("Follow-up run cancelled"));
+                    flight.followUp = null;
+                    return true;
+                }
+            }
+        }
+        return executionRegistry.cancel(reportId);
+    }
+
+    private static Run newRun() {
+        return new Run(UUID.randomUUID().toString(), new CompletableFuture<>());
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("PRIMARY", poolStatus(primaryPool));
+        status.put("SECONDARY", poolStatus(secondaryPool));
+        return status;
+    }
+
+    private Map<String, Object> poolStatus(ThreadPoolExecutor pool) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("workers", pool.getMaximumPoolSize());
+        status.put("running", pool.getActiveCount());
+        status.put("queued", pool.getQueue().size());
+        status.put("queueCapacity", queueCapacity);
+        return status;
+    }
+
+    private ThreadPoolExecutor poolOf(String database) {
+        return "SECONDARY".equals(database) ? secondaryPool : primaryPool;
+    }
+
+    private static String databaseOf(JobConfig job) {
+        // A multi-query run queues behind its first query's database; its statements are
+        // capped per database by StreamingQueryExecutor, whichever they target
+        String target = MultiQueryRunner.isMultiQuery(job)
+                ? job.getQueries().get(0).getTargetDatabase()
+                : job.getTargetDatabase();
+        return "SECONDARY".equalsIgnoreCase(target) ? "SECONDARY" : "PRIMARY";
+    }
+
+    public enum Status {
+        STARTED, QUEUED, ATTACHED, FOLLOW_UP, REJECTED
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Submission {
+        private Status status;
+        private String database;
+        private String reportId; // Report the run will be saved as
+        private int queued; // Runs waiting ahead of / including this one
+        @JsonIgnore
+        private CompletableFuture<Report> result;
+    }
+
+    @FunctionalInterface
+    public interface StreamTask {
+        void run(OutputStream response) throws IOException;
+    }
+
+    /** Worker booked for one streamed run; write hands it the response and waits until the run is done. */
+    public static class StreamSlot {
+        private final String database;
+        private boolean rejected;
+        private final CompletableFuture<OutputStream> response = new CompletableFuture<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        StreamSlot(String database) {
+            this.database = database;
+        }
+
+        public String getDatabase() {
+            return database;
+        }
+
+        public boolean isRejected() {
+            return rejected;
+        }
+
+        public void write(OutputStream out) throws IOException {
+            response.complete(out);
+            try {
+                done.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the streamed run", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Streamed run failed", e.getCause());
+            }
+        }
+    }
+
+    private static class Run {
+        private final String reportId;
+        private final CompletableFuture<Report> result;
+
+        Run(String reportId, CompletableFuture<Report> result) {
+            this.reportId = reportId;
+            this.result = result;
+        }
+    }
+
+    // In-progress run of one job plus the (at most one) follow-up booked behind it
+    private static class Flight {
+        private Run current;
+        private Run followUp;
+
+        Flight(Run current) {
+            this.current = current;
+        }
+    }
+}
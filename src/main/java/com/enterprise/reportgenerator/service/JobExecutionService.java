@@ -4,28 +4,41 @@ import com.enterprise.reportgenerator.model.JobConfig;
 import com.enterprise.reportgenerator.model.Report;
 import com.enterprise.reportgenerator.repository.JsonConfigRepository;
 import com.enterprise.reportgenerator.repository.JsonReportRepository;
-import com.enterprise.reportgenerator.util.ExcelGenerator;
+import com.enterprise.reportgenerator.util.BurstReportWriter;
 import com.enterprise.reportgenerator.util.ErrorUtil;
+import com.enterprise.reportgenerator.util.ExcelGenerator;
+import com.enterprise.reportgenerator.util.ReportFormat;
+import com.enterprise.reportgenerator.util.ReportWriter;
+import com.enterprise.reportgenerator.util.RowSpool;
+import com.enterprise.reportgenerator.util.TeeOutputStream;
+import com.enterprise.reportgenerator.util.TeeReportWriter;
+import com.enterprise.reportgenerator.util.WatermarkTrackingWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -42,6 +55,13 @@ public class JobExecutionService {
     private final JsonReportRepository reportRepository;
     private final EmailService emailService;
     private final MetricCache metricCache;
+    private final StreamingQueryExecutor queryExecutor;
+    private final PartitionedQueryRunner partitionedRunner;
+    private final RunningExecutionRegistry executionRegistry;
+    private final ReportResultCache resultCache;
+    private final IncrementalReportService incrementalService;
+    private final SqlTemplateRegistry sqlTemplates;
+    private final MultiQueryRunner multiQueryRunner;
 
     @Value("${app.config.sql-path:data/sql}")
     private String sqlBasePath;
@@ -49,34 +69,60 @@ public class JobExecutionService {
     @Value("${app.config.output-path:data/reports}")
     private String outputBasePath;
 
-    public void executeJob(String jobId) {
+    @Value("${app.excel.max-rows-per-sheet:1048575}")
+    private int defaultMaxRowsPerSheet;
+
+    @Value("${app.excel.max-sheets-per-file:0}")
+    private int defaultMaxSheetsPerFile;
+
+    @Value("${app.burst.max-slices:500}")
+    private int maxBurstSlices;
+
+    public Report executeJob(String jobId) {
+        return executeJob(jobId, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Runs the job synchronously and returns the saved Report (SUCCESS, FAILED or CANCELLED),
+     * or null when the job does not exist. The report id is chosen by the caller so
+     * it can be handed out before the run finishes.
+     */
+    public Report executeJob(String jobId, String reportId) {
         log.info("Starting execution for Job ID: {}", jobId);
         Optional<JobConfig> jobOpt = jobRepository.findById(jobId);
 
         if (!jobOpt.isPresent()) {
             log.error("Job ID {} not found in configuration.", jobId);
-            return;
+            executionRegistry.unregister(reportId); // Registered by the engine while queued
+            return null;
         }
 
         JobConfig job = jobOpt.get();
-        String reportId = UUID.randomUUID().toString();
         long startTime = System.currentTimeMillis();
+        RunningExecutionRegistry.RunningExecution execution = executionRegistry.register(reportId, jobId,
+                job.getName());
+        execution.markStarted();
 
         try {
+            execution.checkCancelled(); // Cancelled while still queued
+
+            if (MultiQueryRunner.isMultiQuery(job)) {
+                return executeMultiQuery(job, reportId, startTime, execution);
+            }
+
             // 1. Read SQL
             if (job.getSqlFileName() == null || job.getSqlFileName().isEmpty()) {
                 log.error("SQL file name is missing for job: {}", job.getName());
-                saveFailedReport(reportId, job, "SQL file name is missing in job configuration");
-                return;
+                return saveFailedReport(reportId, job, "SQL file name is missing in job configuration");
             }
 
-            Path sqlPath = Paths.get(sqlBasePath, job.getSqlFileName());
-            if (!Files.exists(sqlPath)) {
+            Optional<SqlTemplateRegistry.SqlTemplate> template = sqlTemplates.get(job.getSqlFileName());
+            if (template.isEmpty()) {
+                Path sqlPath = Paths.get(sqlBasePath, job.getSqlFileName());
                 log.error("SQL file not found: {}", sqlPath);
-                saveFailedReport(reportId, job, "SQL file not found: " + sqlPath);
-                return;
+                return saveFailedReport(reportId, job, "SQL file not found: " + sqlPath);
             }
-            String sql = new String(Files.readAllBytes(sqlPath));
+            String sql = template.get().getSql();
 
             // Select DataSource
             JdbcTemplate jdbcTemplate = "SECONDARY".equalsIgnoreCase(job.getTargetDatabase())
@@ -84,105 +130,691 @@ public class JobExecutionService {
                     : primaryJdbcTemplate;
             String dbType = "SECONDARY".equalsIgnoreCase(job.getTargetDatabase()) ? "SECONDARY" : "PRIMARY";
 
-            // 2. Execute SQL
-            log.info("Executing SQL for job {} on {} database", job.getName(), dbType);
-            List<Map<String, Object>> results;
-
-            // Check if date parameters are provided
-            if (job.getFromDate() != null && job.getToDate() != null &&
-                    !job.getFromDate().isEmpty() && !job.getToDate().isEmpty()) {
-                // Use NamedParameterJdbcTemplate for parameter binding
-                NamedParameterJdbcTemplate namedTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
-                Map<String, Object> params = new HashMap<>();
-
-                try {
-                    // Parse dates from yyyy-MM-dd format
-                    LocalDate from = LocalDate.parse(job.getFromDate(), DateTimeFormatter.ISO_LOCAL_DATE);
-                    LocalDate to = LocalDate.parse(job.getToDate(), DateTimeFormatter.ISO_LOCAL_DATE);
-
-                    // Convert to java.sql.Date for Oracle
-                    params.put("FromDate", java.sql.Date.valueOf(from));
-                    params.put("ToDate", java.sql.Date.valueOf(to));
-
-                    log.info("Binding date parameters - FromDate: {}, ToDate: {}", job.getFromDate(), job.getToDate());
-                    results = namedTemplate.queryForList(sql, params);
-                } catch (Exception e) {
-                    log.error("Error parsing or binding date parameters", e);
-                    throw new RuntimeException("Invalid date format. Expected: yyyy-MM-dd", e);
+            Map<String, Object> params = buildDateParams(job);
+
+            ReportFormat format = ReportFormat.fromName(job.getOutputFormat());
+            boolean incremental = IncrementalReportService.isIncremental(job);
+            if (incremental) {
+                sql = incrementalService.prepareQuery(job, sql, params);
+            }
+
+            // Fail before borrowing a connection if the query uses a parameter the job can't bind
+            List<String> missing = sqlTemplates.findMissingParameters(sql, params);
+            if (!missing.isEmpty()) {
+                log.error("Job {} has unbound SQL parameters: {}", job.getName(), missing);
+                return saveFailedReport(reportId, job, "Missing value for SQL parameter(s): " + String.join(", ", missing));
+            }
+
+            // Dashboard metrics are aggregated from the rows as they stream past
+            DashboardMetricAggregator dashboard = DashboardMetricAggregator.forJob(job);
+
+            // Reuse an identical recent result instead of querying again (a cache hit has no rows to
+            // aggregate, so jobs feeding the dashboard query once after a restart)
+            boolean burst = job.getBurstColumn() != null && !job.getBurstColumn().isBlank();
+            String cacheKey = null;
+            if (!incremental && !burst && job.getResultCacheTtlSeconds() != null && job.getResultCacheTtlSeconds() > 0
+                    && (dashboard == null || metricCache.hasMetrics(jobId))) {
+                Map<String, Object> keyParams = new HashMap<>(params);
+                keyParams.put("maxRows", job.getMaxRows());
+                keyParams.put("format", format.name());
+                keyParams.put("maxRowsPerSheet", job.getMaxRowsPerSheet());
+                keyParams.put("maxSheetsPerFile", job.getMaxSheetsPerFile());
+                cacheKey = resultCache.keyFor(sql, keyParams, dbType);
+                Optional<ReportResultCache.Entry> cached = resultCache.lookup(cacheKey);
+                if (cached.isPresent()) {
+                    return saveCachedReport(reportId, job, startTime, cached.get().getReport());
                 }
-            } else {
-                // No parameters - execute as normal
-                results = jdbcTemplate.queryForList(sql);
             }
 
-            // 3. Generate Excel
+            // 2. Prepare output file
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
             String dayFolder = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 
             Path outputDir = Paths.get(outputBasePath, dayFolder);
             Files.createDirectories(outputDir);
 
-            String fileName = job.getSqlFileName().replace(".txt", "") + "_" + timestamp + ".xlsx";
+            String baseName = job.getSqlFileName().replace(".txt", "");
+            String fileName = baseName + "_" + timestamp + "." + format.getExtension();
             Path outputPath = outputDir.resolve(fileName);
 
-            ExcelGenerator.generateExcel(results, outputPath.toString());
+            // Incremental jobs write the delta and/or keep this run's rows as a cumulative segment
+            boolean writeDelta = !incremental || IncrementalReportService.writesDelta(job);
+            Path segmentPath = incremental && IncrementalReportService.writesCumulative(job)
+                    ? incrementalService.newSegmentPath(job)
+                    : null;
+
+            // Burst jobs route every row to the file of its key value; slice files are named after the key
+            Map<String, Path> slicePaths = new LinkedHashMap<>();
+            BurstReportWriter.SliceWriterFactory sliceFactory = key -> {
+                String safeKey = key.replaceAll("[^A-Za-z0-9_-]+", "_");
+                Path slicePath = outputDir.resolve(baseName + "_" + safeKey + "_" + timestamp + "." + format.getExtension());
+                for (int n = 2; slicePaths.containsValue(slicePath); n++) {
+                    slicePath = outputDir.resolve(
+                            baseName + "_" + safeKey + "_" + n + "_" + timestamp + "." + format.getExtension());
+                }
+                slicePaths.put(key, slicePath);
+                return openWriter(format, slicePath, job);
+            };
+
+            // 3. Execute SQL, streaming rows straight into the output file
+            log.info("Executing SQL for job {} on {} database", job.getName(), dbType);
+            QueryOutcome outcome;
+            Object watermark = null;
+            List<String> deltaParts = null;
+            Map<String, ReportWriter> slices = null;
+            try (ReportWriter deltaWriter = !writeDelta ? null
+                    : burst ? new BurstReportWriter(job.getBurstColumn(), sliceFactory, maxBurstSlices)
+                            : openWriter(format, outputPath, job);
+                    RowSpool segment = segmentPath != null ? new RowSpool(segmentPath) : null) {
+                ReportWriter sink = deltaWriter != null && segment != null
+                        ? new TeeReportWriter(List.of(deltaWriter, segment))
+                        : deltaWriter != null ? deltaWriter : segment;
+                // Incremental jobs with a cumulative output aggregate over that instead of the delta
+                if (dashboard != null && segmentPath == null) {
+                    sink = new TeeReportWriter(List.of(sink, dashboard));
+                }
+                WatermarkTrackingWriter tracker = incremental
+                        ? new WatermarkTrackingWriter(sink, job.getWatermarkColumn())
+                        : null;
+
+                outcome = runQuery(jdbcTemplate, sql, params, job, tracker != null ? tracker : sink, execution);
+                sink.finish();
+                if (deltaWriter instanceof BurstReportWriter) {
+                    slices = ((BurstReportWriter) deltaWriter).getSlices();
+                } else {
+                    deltaParts = partFilesOf(deltaWriter);
+                }
+                if (tracker != null) {
+                    watermark = tracker.getMax();
+                }
+            } catch (Exception e) {
+                List<Path> written = new ArrayList<>(slicePaths.values()); // Don't leave truncated files behind
+                written.add(outputPath);
+                written.add(segmentPath);
+                discardOutputs(written);
+                throw e;
+            }
+
+            // Every output is written before the segment and watermark are committed (last), so a
+            // failure up to and including the commit leaves no file behind and the next run re-fetches
+            String cumulativeFileName = null;
+            long cumulativeRows = 0;
+            List<String> cumulativeParts = null;
+            String newWatermark = null;
+            Path committedSegment = null;
+            try {
+                if (segmentPath != null) {
+                    cumulativeFileName = baseName + "_cumulative_" + timestamp + "." + format.getExtension();
+                    try (ReportWriter cumulativeWriter = openWriter(format, outputDir.resolve(cumulativeFileName),
+                            job)) {
+                        ReportWriter target = dashboard != null
+                                ? new TeeReportWriter(List.of(cumulativeWriter, dashboard))
+                                : cumulativeWriter;
+                        incrementalService.writeCumulative(job, target, segmentPath);
+                        target.finish();
+                        cumulativeRows = cumulativeWriter.getRowCount();
+                        cumulativeParts = partFilesOf(cumulativeWriter);
+                    }
+                    committedSegment = incrementalService.commitSegment(segmentPath);
+                }
+                if (incremental) {
+                    newWatermark = incrementalService.commitWatermark(jobId, watermark);
+                }
+            } catch (Exception e) {
+                // Same cleanup as a failed query, plus whatever was written since
+                List<Path> written = new ArrayList<>(slicePaths.values());
+                written.add(outputPath);
+                written.add(segmentPath);
+                written.add(committedSegment);
+                written.add(cumulativeFileName != null ? outputDir.resolve(cumulativeFileName) : null);
+                written.addAll(pathsOf(deltaParts));
+                written.addAll(pathsOf(cumulativeParts));
+                if (slices != null) {
+                    for (ReportWriter slice : slices.values()) {
+                        written.addAll(pathsOf(partFilesOf(slice)));
+                    }
+                }
+                discardOutputs(written);
+                throw e;
+            }
 
             // 4. Save Report Metadata
+            if (slices != null) {
+                Report first = saveBurstReports(job, reportId, startTime, format, slices, slicePaths, outcome,
+                        incremental ? newWatermark : null);
+                if (cumulativeFileName != null) {
+                    saveCumulativeReport(job, startTime, format, outputDir.resolve(cumulativeFileName),
+                            cumulativeParts, cumulativeRows, outcome.rowCount, newWatermark);
+                }
+                publishMetrics(job, dashboard);
+                log.info("Job {} completed successfully with {} burst slices. Report ID: {}", job.getName(),
+                        slices.size(), first.getId());
+                return first;
+            }
+
             Report report = new Report();
             report.setId(reportId);
             report.setJobId(jobId);
             report.setJobName(job.getName());
-            report.setFileName(fileName);
-            report.setFilePath(outputPath.toString());
+            report.setFileName(writeDelta ? fileName : cumulativeFileName);
+            report.setFormat(format.name());
+            report.setFilePath(outputDir.resolve(report.getFileName()).toString());
+            report.setPartFiles(writeDelta ? deltaParts : cumulativeParts);
             report.setGeneratedAt(startTime);
             report.setStatus("SUCCESS");
-            report.setRowCount(results.size());
+            report.setRowCount((int) (writeDelta ? outcome.rowCount : cumulativeRows));
+            report.setFetchSize(outcome.fetchSize);
+            report.setFetchRoundTrips(outcome.fetchRoundTrips);
+            report.setPartitions(outcome.partitions);
+            if (incremental) {
+                report.setDeltaRowCount(outcome.rowCount);
+                report.setWatermark(newWatermark);
+            }
 
-            File reportFile = outputPath.toFile();
-            report.setFileSizeBytes(reportFile.exists() ? reportFile.length() : 0);
+            report.setFileSizeBytes(totalFileSize(report));
 
             reportRepository.saveReport(report);
             log.info("Report metadata saved: {}", reportId);
 
-            // 5. Send Email
-            if (job.isEmailEnabled()) {
-                try {
-                    log.info("Attempting to send report email for job {}", job.getName());
-                    emailService.sendReportEmail(
-                            job.getEmailRecipients(),
-                            "Report Generated: " + job.getName(),
-                            "Please find attached the report for " + job.getName(),
-                            reportFile);
-                    log.info("Email sent successfully for job {}", job.getName());
-                } catch (Exception e) {
-                    log.error("Email delivery failed for job {}: {}", job.getName(), e.getMessage());
-                    // Update report status to reflect email failure but general success
-                    report.setErrorMessage("Report generated, but email delivery failed.");
-                    reportRepository.saveReport(report);
-                }
+            if (cacheKey != null) {
+                resultCache.put(cacheKey, report, job.getResultCacheTtlSeconds());
+            }
+
+            // Delta and cumulative both requested: the cumulative file gets its own entry
+            if (writeDelta && cumulativeFileName != null) {
+                saveCumulativeReport(job, startTime, format, outputDir.resolve(cumulativeFileName),
+                        cumulativeParts, cumulativeRows, outcome.rowCount, newWatermark);
             }
 
+            publishMetrics(job, dashboard);
+
+            // 5. Send Email
+            sendReportEmail(job, report);
+
             log.info("Job {} completed successfully. Report ID: {}", job.getName(), reportId);
+            return report;
 
         } catch (Exception e) {
+            if (execution.isCancelled()) {
+                log.warn("Job {} was cancelled (report {})", job.getName(), reportId);
+                return saveUnsuccessfulReport(reportId, job, "CANCELLED", "Execution was cancelled by a user");
+            }
             log.error("Critical error executing job {}", job.getName(), e);
             String sanitizedMessage = ErrorUtil.sanitizeErrorMessage(e.getMessage());
-            saveFailedReport(reportId, job, sanitizedMessage);
+            return saveFailedReport(reportId, job, sanitizedMessage);
+        } finally {
+            executionRegistry.unregister(reportId);
+        }
+    }
+
+    private QueryOutcome runQuery(JdbcTemplate jdbcTemplate, String sql, Map<String, Object> params, JobConfig job,
+            ReportWriter writer, RunningExecutionRegistry.RunningExecution execution) throws Exception {
+        QueryOutcome outcome = new QueryOutcome();
+        if (PartitionedQueryRunner.isPartitioned(job) && params.containsKey("FromDate")) {
+            PartitionedQueryRunner.PartitionedResult result = partitionedRunner.execute(jdbcTemplate, sql, params,
+                    job, LocalDate.parse(job.getFromDate()), LocalDate.parse(job.getToDate()), writer, execution);
+            outcome.rowCount = result.getRowCount();
+            outcome.fetchSize = result.getFetchSize();
+            outcome.fetchRoundTrips = result.getFetchRoundTrips();
+            outcome.partitions = result.getPartitions();
+        } else {
+            StreamingQueryExecutor.QueryStats stats = queryExecutor.execute(jdbcTemplate, sql, params, job, writer,
+                    execution);
+            outcome.rowCount = stats.getRowCount();
+            outcome.fetchSize = stats.getFetchSize();
+            outcome.fetchRoundTrips = stats.getFetchRoundTrips();
+        }
+        return outcome;
+    }
+
+    /**
+     * Resolves and validates an ad-hoc streamed run up front, so problems can still be
+     * answered with an error status before the response starts. Returns null when the
+     * job does not exist; throws IllegalArgumentException when it cannot be streamed.
+     */
+    public StreamRun prepareStream(String jobId, String formatName) {
+        Optional<JobConfig> jobOpt = jobRepository.findById(jobId);
+        if (jobOpt.isEmpty()) {
+            return null;
+        }
+        JobConfig job = jobOpt.get();
+        if (MultiQueryRunner.isMultiQuery(job) || (job.getBurstColumn() != null && !job.getBurstColumn().isBlank())) {
+            throw new IllegalArgumentException("Multi-query and burst jobs cannot be streamed");
+        }
+        if (job.getSqlFileName() == null || job.getSqlFileName().isEmpty()) {
+            throw new IllegalArgumentException("SQL file name is missing in job configuration");
+        }
+        Optional<SqlTemplateRegistry.SqlTemplate> template = sqlTemplates.get(job.getSqlFileName());
+        if (template.isEmpty()) {
+            throw new IllegalArgumentException("SQL file not found: " + job.getSqlFileName());
+        }
+        ReportFormat format;
+        try {
+            format = ReportFormat.fromName(formatName != null ? formatName : job.getOutputFormat());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format: " + formatName);
+        }
+
+        Map<String, Object> params = buildDateParams(job);
+        String sql = template.get().getSql();
+        if (IncrementalReportService.isIncremental(job)) {
+            sql = incrementalService.prepareQuery(job, sql, params); // Rows after the stored watermark; it is not advanced
         }
+        List<String> missing = sqlTemplates.findMissingParameters(sql, params);
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Missing value for SQL parameter(s): " + String.join(", ", missing));
+        }
+
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        String fileName = job.getSqlFileName().replace(".txt", "") + "_" + timestamp + "." + format.getExtension();
+        return new StreamRun(UUID.randomUUID().toString(), job, sql, params, format, fileName);
     }
 
-    private void saveFailedReport(String reportId, JobConfig job, String errorMessage) {
+    /**
+     * Executes a prepared run and writes the output straight to the given stream while
+     * rows are fetched. Called on an engine worker (JobExecutionEngine.submitStream). With saveCopy the same bytes also go to the report folder and a
+     * Report is recorded (no email: the caller is downloading it). On failure the stream
+     * is left unterminated so the client sees an aborted transfer, not a short file.
+     */
+    public void streamJob(StreamRun run, OutputStream response, boolean saveCopy) throws IOException {
+        JobConfig job = run.getJob();
+        long startTime = System.currentTimeMillis();
+        RunningExecutionRegistry.RunningExecution execution = executionRegistry.register(run.getReportId(),
+                job.getId(), job.getName());
+        execution.markStarted();
+        Path copyPath = null;
+        OutputStream copy = null;
+        try {
+            execution.checkCancelled(); // Cancelled while still queued
+            OutputStream target = response;
+            if (saveCopy) {
+                Path outputDir = Paths.get(outputBasePath,
+                        LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+                Files.createDirectories(outputDir);
+                copyPath = outputDir.resolve(run.getFileName());
+                copy = new BufferedOutputStream(Files.newOutputStream(copyPath), 64 * 1024);
+                target = new TeeOutputStream(response, copy);
+            }
+
+            log.info("Streaming job {} as {}", job.getName(), run.getFormat());
+            QueryOutcome outcome;
+            DashboardMetricAggregator dashboard = DashboardMetricAggregator.forJob(job);
+            try (ReportWriter writer = run.getFormat().newWriter(target)) {
+                ReportWriter sink = dashboard != null ? new TeeReportWriter(List.of(writer, dashboard)) : writer;
+                outcome = runQuery(jdbcTemplateFor(job), run.getSql(), run.getParams(), job, sink, execution);
+                sink.finish();
+            }
+            publishMetrics(job, dashboard);
+            log.info("Streamed {} rows of job {} in {}ms", outcome.rowCount, job.getName(),
+                    System.currentTimeMillis() - startTime);
+
+            if (copyPath != null) {
+                Report report = new Report();
+                report.setId(run.getReportId());
+                report.setJobId(job.getId());
+                report.setJobName(job.getName());
+                report.setFileName(run.getFileName());
+                report.setFormat(run.getFormat().name());
+                report.setFilePath(copyPath.toString());
+                report.setGeneratedAt(startTime);
+                report.setStatus("SUCCESS");
+                report.setRowCount((int) outcome.rowCount);
+                report.setFetchSize(outcome.fetchSize);
+                report.setFetchRoundTrips(outcome.fetchRoundTrips);
+                report.setPartitions(outcome.partitions);
+                report.setFileSizeBytes(totalFileSize(report));
+                reportRepository.saveReport(report);
+            }
+        } catch (Exception e) {
+            if (copy != null) {
+                copy.close();
+                Files.deleteIfExists(copyPath);
+            }
+            boolean cancelled = execution.isCancelled();
+            if (copyPath != null) {
+                saveUnsuccessfulReport(run.getReportId(), job, cancelled ? "CANCELLED" : "FAILED",
+                        cancelled ? "Execution was cancelled by a user" : ErrorUtil.sanitizeErrorMessage(e.getMessage()));
+            }
+            log.error("Streaming run of job {} failed", job.getName(), e);
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            throw new IOException("Streaming run of job " + job.getName() + " failed", e);
+        } finally {
+            executionRegistry.unregister(run.getReportId());
+        }
+    }
+
+    private JdbcTemplate jdbcTemplateFor(JobConfig job) {
+        return "SECONDARY".equalsIgnoreCase(job.getTargetDatabase()) ? secondaryJdbcTemplate : primaryJdbcTemplate;
+    }
+
+    /** A validated ad-hoc run waiting for its response stream. */
+    @lombok.Value
+    public static class StreamRun {
+        String reportId;
+        JobConfig job;
+        String sql;
+        Map<String, Object> params;
+        ReportFormat format;
+        String fileName;
+    }
+
+    /**
+     * Runs every query of a multi-query job concurrently and writes them as sheets of
+     * one workbook, saved as one Report and sent as one email. Always XLSX.
+     */
+    private Report executeMultiQuery(JobConfig job, String reportId, long startTime,
+            RunningExecutionRegistry.RunningExecution execution) throws Exception {
+        Map<String, Object> params = buildDateParams(job);
+        List<MultiQueryRunner.Query> queries = new ArrayList<>();
+        Set<String> sheetNames = new HashSet<>();
+        for (JobConfig.QuerySpec spec : job.getQueries()) {
+            if (spec.getSqlFileName() == null || spec.getSqlFileName().isEmpty()) {
+                return saveFailedReport(reportId, job, "SQL file name is missing for one of the job's queries");
+            }
+            Optional<SqlTemplateRegistry.SqlTemplate> template = sqlTemplates.get(spec.getSqlFileName());
+            if (template.isEmpty()) {
+                Path sqlPath = Paths.get(sqlBasePath, spec.getSqlFileName());
+                log.error("SQL file not found: {}", sqlPath);
+                return saveFailedReport(reportId, job, "SQL file not found: " + sqlPath);
+            }
+            String sql = template.get().getSql();
+            List<String> missing = sqlTemplates.findMissingParameters(sql, params);
+            if (!missing.isEmpty()) {
+                log.error("Job {} query {} has unbound SQL parameters: {}", job.getName(), spec.getSqlFileName(),
+                        missing);
+                return saveFailedReport(reportId, job, "Missing value for SQL parameter(s) in "
+                        + spec.getSqlFileName() + ": " + String.join(", ", missing));
+            }
+
+            String sheetName = spec.getSheetName() != null && !spec.getSheetName().isBlank()
+                    ? spec.getSheetName().trim()
+                    : spec.getSqlFileName().replace(".txt", "");
+            String uniqueName = sheetName;
+            for (int n = 2; !sheetNames.add(uniqueName.toLowerCase()); n++) { // Excel sheet names are case-insensitive
+                uniqueName = sheetName + " " + n;
+            }
+            boolean secondary = "SECONDARY".equalsIgnoreCase(spec.getTargetDatabase());
+            queries.add(new MultiQueryRunner.Query(uniqueName, spec.getSqlFileName(),
+                    secondary ? "SECONDARY" : "PRIMARY", secondary ? secondaryJdbcTemplate : primaryJdbcTemplate,
+                    sql));
+        }
+        if (job.getOutputFormat() != null && ReportFormat.fromName(job.getOutputFormat()) != ReportFormat.XLSX) {
+            log.warn("Job {} has several queries; writing XLSX instead of {}", job.getName(), job.getOutputFormat());
+        }
+
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        String dayFolder = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        Path outputDir = Paths.get(outputBasePath, dayFolder);
+        Files.createDirectories(outputDir);
+        String fileName = job.getName().replaceAll("[^A-Za-z0-9_-]+", "_") + "_" + timestamp + ".xlsx";
+        Path outputPath = outputDir.resolve(fileName);
+
+        MultiQueryRunner.MultiQueryResult result;
+        List<String> parts;
+        try (ExcelGenerator writer = (ExcelGenerator) openWriter(ReportFormat.XLSX, outputPath, job)) {
+            result = multiQueryRunner.execute(queries, params, job, writer, execution);
+            writer.finish();
+            parts = partFilesOf(writer);
+        }
+
         Report report = new Report();
         report.setId(reportId);
         report.setJobId(job.getId());
         report.setJobName(job.getName());
-        report.setFileName("FAILED");
+        report.setFileName(fileName);
+        report.setFormat(ReportFormat.XLSX.name());
+        report.setFilePath(outputPath.toString());
+        report.setPartFiles(parts);
+        report.setGeneratedAt(startTime);
+        report.setStatus("SUCCESS");
+        report.setRowCount((int) result.getRowCount());
+        report.setFetchSize(result.getFetchSize());
+        report.setFetchRoundTrips(result.getFetchRoundTrips());
+        report.setQueries(result.getQueries());
+        report.setFileSizeBytes(totalFileSize(report));
+        reportRepository.saveReport(report);
+        log.info("Report metadata saved: {}", reportId);
+
+        sendReportEmail(job, report);
+        log.info("Job {} completed successfully ({} queries). Report ID: {}", job.getName(), queries.size(),
+                reportId);
+        return report;
+    }
+
+    private ReportWriter openWriter(ReportFormat format, Path file, JobConfig job) throws IOException {
+        if (format != ReportFormat.XLSX) {
+            return format.newWriter(file);
+        }
+        int rowsPerSheet = job.getMaxRowsPerSheet() != null ? job.getMaxRowsPerSheet() : defaultMaxRowsPerSheet;
+        int sheetsPerFile = job.getMaxSheetsPerFile() != null ? job.getMaxSheetsPerFile() : defaultMaxSheetsPerFile;
+        return new ExcelGenerator(file.toString(), rowsPerSheet, sheetsPerFile);
+    }
+
+    // Deletes what a failed run wrote, so no file is left without a Report pointing at it (nulls are skipped)
+    private static void discardOutputs(List<Path> files) throws IOException {
+        for (Path file : files) {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static List<Path> pathsOf(List<String> parts) {
+        return parts == null ? List.of() : parts.stream().map(Paths::get).collect(Collectors.toList());
+    }
+
+    // All part files when the workbook was split over several files, otherwise null
+    private static List<String> partFilesOf(ReportWriter writer) {
+        if (writer instanceof ExcelGenerator && ((ExcelGenerator) writer).getPartFiles().size() > 1) {
+            return List.copyOf(((ExcelGenerator) writer).getPartFiles());
+        }
+        return null;
+    }
+
+    private static List<File> reportFiles(Report report) {
+        List<String> paths = report.getPartFiles() != null ? report.getPartFiles() : List.of(report.getFilePath());
+        return paths.stream().map(File::new).collect(Collectors.toList());
+    }
+
+    private static long totalFileSize(Report report) {
+        long size = 0;
+        for (File file : reportFiles(report)) {
+            size += file.exists() ? file.length() : 0;
+        }
+        return size;
+    }
+
+    private static class QueryOutcome {
+        private long rowCount;
+        private int fetchSize;
+        private long fetchRoundTrips;
+        private List<Report.PartitionStat> partitions;
+    }
+
+    private void saveCumulativeReport(JobConfig job, long startTime, ReportFormat format, Path file,
+            List<String> parts, long rows, long deltaRows, String watermark) {
+        Report cumulative = new Report();
+        cumulative.setId(UUID.randomUUID().toString());
+        cumulative.setJobId(job.getId());
+        cumulative.setJobName(job.getName() + " (cumulative)");
+        cumulative.setFileName(file.getFileName().toString());
+        cumulative.setFormat(format.name());
+        cumulative.setFilePath(file.toString());
+        cumulative.setPartFiles(parts);
+        cumulative.setGeneratedAt(startTime);
+        cumulative.setStatus("SUCCESS");
+        cumulative.setRowCount((int) rows);
+        cumulative.setFileSizeBytes(totalFileSize(cumulative));
+        cumulative.setDeltaRowCount(deltaRows);
+        cumulative.setWatermark(watermark);
+        reportRepository.saveReport(cumulative);
+    }
+
+    /**
+     * One Report per burst slice, all from the same query execution. The first slice
+     * keeps the run's report id; each slice is mailed only to the recipients of its key.
+     */
+    private Report saveBurstReports(JobConfig job, String reportId, long startTime, ReportFormat format,
+            Map<String, ReportWriter> slices, Map<String, Path> slicePaths, QueryOutcome outcome,
+            String watermark) {
+        Report first = null;
+        for (Map.Entry<String, ReportWriter> slice : slices.entrySet()) {
+            String key = slice.getKey();
+            Path path = slicePaths.get(key);
+            Report report = new Report();
+            report.setId(first == null ? reportId : UUID.randomUUID().toString());
+            report.setJobId(job.getId());
+            report.setJobName(job.getName() + " [" + key + "]");
+            report.setBurstKey(key);
+            report.setFileName(path.getFileName().toString());
+            report.setFormat(format.name());
+            report.setFilePath(path.toString());
+            report.setPartFiles(partFilesOf(slice.getValue()));
+            report.setGeneratedAt(startTime);
+            report.setStatus("SUCCESS");
+            report.setRowCount((int) slice.getValue().getRowCount());
+            report.setFetchSize(outcome.fetchSize);
+            report.setFetchRoundTrips(outcome.fetchRoundTrips);
+            if (first == null) {
+                report.setPartitions(outcome.partitions);
+            }
+            if (watermark != null) {
+                report.setDeltaRowCount(outcome.rowCount);
+                report.setWatermark(watermark);
+            }
+            report.setFileSizeBytes(totalFileSize(report));
+            reportRepository.saveReport(report);
+
+            List<String> recipients = burstRecipients(job, key);
+            if (recipients.isEmpty()) {
+                log.info("No recipients mapped for burst key '{}' of job {}", key, job.getName());
+            } else {
+                sendReportEmail(job, report, recipients, job.getName() + " - " + key);
+            }
+            if (first == null) {
+                first = report;
+            }
+        }
+        return first;
+    }
+
+    // Exact key first, then a case-insensitive match
+    private static List<String> burstRecipients(JobConfig job, String key) {
+        Map<String, List<String>> mapping = job.getBurstRecipients();
+        if (mapping == null) {
+            return List.of();
+        }
+        if (mapping.containsKey(key)) {
+            return mapping.get(key) != null ? mapping.get(key) : List.of();
+        }
+        for (Map.Entry<String, List<String>> entry : mapping.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(key) && entry.getValue() != null) {
+                return entry.getValue();
+            }
+        }
+        return List.of();
+    }
+
+    // Only complete runs publish, so a failed run leaves the previous values on the dashboard
+    private void publishMetrics(JobConfig job, DashboardMetricAggregator dashboard) {
+        if (dashboard != null) {
+            List<MetricCache.MetricValue> metrics = dashboard.getResults();
+            metricCache.updateMetrics(job.getId(), metrics);
+            log.info("Published {} dashboard metric(s) of job {}", metrics.size(), job.getName());
+        }
+    }
+
+    private void sendReportEmail(JobConfig job, Report report) {
+        sendReportEmail(job, report, job.getEmailRecipients(), job.getName());
+    }
+
+    private void sendReportEmail(JobConfig job, Report report, List<String> recipients, String title) {
+        if (!job.isEmailEnabled()) {
+            return;
+        }
+        try {
+            log.info("Attempting to send report email for {}", title);
+            emailService.sendReportEmailWithAttachments(
+                    recipients,
+                    "Report Generated: " + title,
+                    "Please find attached the report for " + title,
+                    reportFiles(report));
+            log.info("Email sent successfully for {}", title);
+        } catch (Exception e) {
+            log.error("Email delivery failed for {}: {}", title, e.getMessage());
+            // Update report status to reflect email failure but general success
+            report.setErrorMessage("Report generated, but email delivery failed.");
+            reportRepository.saveReport(report);
+        }
+    }
+
+    // A cache hit gets its own Report entry that points at the already generated file
+    private Report saveCachedReport(String reportId, JobConfig job, long startTime, Report source) {
+        log.info("Result cache hit for job {}: reusing report {} ({})", job.getName(), source.getId(),
+                source.getFilePath());
+        Report report = new Report();
+        report.setId(reportId);
+        report.setJobId(job.getId());
+        report.setJobName(job.getName());
+        report.setFileName(source.getFileName());
+        report.setFormat(source.getFormat());
+        report.setFilePath(source.getFilePath());
+        report.setPartFiles(source.getPartFiles());
+        report.setGeneratedAt(startTime);
+        report.setStatus("SUCCESS");
+        report.setRowCount(source.getRowCount());
+        report.setFileSizeBytes(source.getFileSizeBytes());
+        report.setCachedFromReportId(source.getId());
+        reportRepository.saveReport(report);
+
+        sendReportEmail(job, report);
+        log.info("Job {} completed from cache. Report ID: {}", job.getName(), reportId);
+        return report;
+    }
+
+    private Map<String, Object> buildDateParams(JobConfig job) {
+        Map<String, Object> params = new HashMap<>();
+
+        // Check if date parameters are provided
+        if (job.getFromDate() != null && job.getToDate() != null &&
+                !job.getFromDate().isEmpty() && !job.getToDate().isEmpty()) {
+            try {
+                // Parse dates from yyyy-MM-dd format
+                LocalDate from = LocalDate.parse(job.getFromDate(), DateTimeFormatter.ISO_LOCAL_DATE);
+                LocalDate to = LocalDate.parse(job.getToDate(), DateTimeFormatter.ISO_LOCAL_DATE);
+
+                // Convert to java.sql.Date for Oracle
+                params.put("FromDate", java.sql.Date.valueOf(from));
+                params.put("ToDate", java.sql.Date.valueOf(to));
+            } catch (Exception e) {
+                log.error("Error parsing date parameters", e);
+                throw new RuntimeException("Invalid date format. Expected: yyyy-MM-dd", e);
+            }
+
+            log.info("Binding date parameters - FromDate: {}, ToDate: {}", job.getFromDate(), job.getToDate());
+        }
+        return params;
+    }
+
+    private Report saveFailedReport(String reportId, JobConfig job, String errorMessage) {
+        return saveUnsuccessfulReport(reportId, job, "FAILED", errorMessage);
+    }
+
+    private Report saveUnsuccessfulReport(String reportId, JobConfig job, String status, String errorMessage) {
+        Report report = new Report();
+        report.setId(reportId);
+        report.setJobId(job.getId());
+        report.setJobName(job.getName());
+        report.setFileName(status);
         report.setFilePath("");
         report.setGeneratedAt(System.currentTimeMillis());
-        report.setStatus("FAILED");
+        report.setStatus(status);
         report.setErrorMessage(errorMessage);
         reportRepository.saveReport(report);
-        log.warn("Failed report saved: {}", reportId);
+        log.warn("{} report saved: {}", status, reportId);
+        return report;
     }
 
     public void resendLastReportEmail(String jobId) {
@@ -193,7 +825,7 @@ public class JobExecutionService {
         }
         JobConfig job = jobOpt.get();
 
-        if (!job.isEmailEnabled() || job.getEmailRecipients() == null || job.getEmailRecipients().isEmpty()) {
+        if (!job.isEmailEnabled()) {
             throw new IllegalStateException("Email is not enabled or no recipients configured for this job.");
         }
 
@@ -207,22 +839,47 @@ public class JobExecutionService {
             throw new IllegalStateException("No successful reports found for this job.");
         }
 
+        // A burst run is one report per slice, all with the run's timestamp; each slice goes
+        // only to the recipients of its key, as when the run was first mailed
         Report lastReport = lastReportOpt.get();
-        File reportFile = new File(lastReport.getFilePath());
-
-        if (!reportFile.exists()) {
-            throw new IllegalStateException("Report file not found on disk: " + lastReport.getFilePath());
+        List<Report> slices = reports.stream()
+                .filter(r -> "SUCCESS".equals(r.getStatus()) && r.getBurstKey() != null
+                        && r.getGeneratedAt() == lastReport.getGeneratedAt())
+                .collect(Collectors.toList());
+        Map<Report, List<String>> deliveries = new LinkedHashMap<>();
+        if (slices.isEmpty()) {
+            deliveries.put(lastReport, job.getEmailRecipients());
+        } else {
+            for (Report slice : slices) {
+                deliveries.put(slice, burstRecipients(job, slice.getBurstKey()));
+            }
+        }
+        deliveries.values().removeIf(recipients -> recipients == null || recipients.isEmpty());
+        if (deliveries.isEmpty()) {
+            throw new IllegalStateException("Email is not enabled or no recipients configured for this job.");
         }
 
-        emailService.sendReportEmail(
-                job.getEmailRecipients(),
-                "RESENT: Report Generated: " + job.getName(),
-                "This is a manually triggered resend of the last generated report for " + job.getName()
-                        + ".\nGenerated at: "
-                        + LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(lastReport.getGeneratedAt()),
-                                java.time.ZoneId.systemDefault()),
-                reportFile);
+        for (Report report : deliveries.keySet()) {
+            for (File file : reportFiles(report)) {
+                if (!file.exists()) {
+                    throw new IllegalStateException("Report file not found on disk: " + file.getPath());
+                }
+            }
+        }
 
-        log.info("Resent email for report: {}", lastReport.getId());
+        for (Map.Entry<Report, List<String>> delivery : deliveries.entrySet()) {
+            Report report = delivery.getKey();
+            String title = report.getBurstKey() != null ? job.getName() + " - " + report.getBurstKey()
+                    : job.getName();
+            emailService.sendReportEmailWithAttachments(
+                    delivery.getValue(),
+                    "RESENT: Report Generated: " + title,
+                    "This is a manually triggered resend of the last generated report for " + title
+                            + ".\nGenerated at: "
+                            + LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(report.getGeneratedAt()),
+                                    java.time.ZoneId.systemDefault()),
+                    reportFiles(report));
+            log.info("Resent email for report: {}", report.getId());
+        }
     }
 }
@@ -6,28 +6,46 @@ import org.springframework.stereotype.Component;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class MetricCache {
 
-    // Key: JobID, Value: List of calculated metrics
+    // Key: JobID, Value: List of calculated metrics (published by the job's last successful run)
     private final Map<String, List<MetricValue>> cache = new ConcurrentHashMap<>();
 
     public void updateMetrics(String jobId, List<MetricValue> metrics) {
-        cache.put(jobId, metrics);
+        cache.put(jobId, List.copyOf(metrics));
     }
 
     public Map<String, List<MetricValue>> getAllMetrics() {
         return Collections.unmodifiableMap(cache);
     }
 
+    public List<MetricValue> getMetrics(String jobId) {
+        return cache.getOrDefault(jobId, List.of());
+    }
+
+    public boolean hasMetrics(String jobId) {
+        return cache.containsKey(jobId);
+    }
+
+    public Optional<MetricValue> find(String jobId, String label) {
+        return getMetrics(jobId).stream().filter(m -> m.getLabel().equals(label)).findFirst();
+    }
+
+    public void evict(String jobId) {
+        cache.remove(jobId);
+    }
+
     @lombok.Data
     @lombok.AllArgsConstructor
     public static class MetricValue {
         private String label;
-        private Object value;
+        private Object value; // Number for counters, [{x, y}] for charts
         private String type; // COUNTER, CHART
         private JobConfig.MetricConfig originalConfig;
+        private long computedAt;
     }
 }
@@ -0,0 +1,122 @@
+package com.enterprise.reportgenerator.service;
+
+import com.enterprise.reportgenerator.model.MetricConfig;
+import com.enterprise.reportgenerator.repository.JsonMetricRepository;
+import com.enterprise.reportgenerator.repository.MetricHistoryRepository;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps collected metric history bounded. A sweep applies each metric's
+ * retention (raw points, hourly and daily rollups, in days) by rewriting only
+ * the files that have expired data; reads and collection carry on meanwhile.
+ * History of a metric that no longer exists is deleted once it has had no new
+ * point for the orphan grace period.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MetricHistoryRetentionService {
+
+    private final JsonMetricRepository metricRepository;
+    private final MetricHistoryRepository historyRepository;
+
+    @Value("${app.metrics.history.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.metrics.history.retention.raw-days:7}")
+    private int defaultRawDays;
+
+    @Value("${app.metrics.history.retention.hourly-days:90}")
+    private int defaultHourlyDays;
+
+    @Value("${app.metrics.history.retention.daily-days:0}")
+    private int defaultDailyDays;
+
+    @Value("${app.metrics.history.retention.orphan-grace-days:7}")
+    private int orphanGraceDays;
+
+    private volatile SweepResult lastSweep;
+
+    @Scheduled(cron = "${app.metrics.history.retention.cron:0 15 * * * *}")
+    public void scheduledSweep() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    public SweepResult getLastSweep() {
+        return lastSweep;
+    }
+
+    public synchronized SweepResult sweep() {
+        long start = System.currentTimeMillis();
+        SweepResult result = new SweepResult();
+        result.setStartedAt(start);
+
+        for (String metricId : historyRepository.getMetricIds()) {
+            MetricConfig metric = metricRepository.findById(metricId).orElse(null);
+            if (metric == null) {
+                // Collection stopped when the metric was deleted, so its last point dates the deletion
+                try {
+                    if (historyRepository.lastTimestamp(metricId) < cutoff(start, orphanGraceDays)
+                            && historyRepository.delete(metricId)) {
+                        result.orphansDeleted++;
+                    }
+                } catch (IOException e) {
+                    log.error("Failed to delete history of removed metric {}", metricId, e);
+                }
+                continue;
+            }
+            int rawDays = metric.getHistoryRawDays() != null ? metric.getHistoryRawDays() : defaultRawDays;
+            int hourlyDays = metric.getHistoryHourlyDays() != null ? metric.getHistoryHourlyDays() : defaultHourlyDays;
+            int dailyDays = metric.getHistoryDailyDays() != null ? metric.getHistoryDailyDays() : defaultDailyDays;
+            try {
+                long points = rawDays > 0 ? historyRepository.dropRawBefore(metricId, cutoff(start, rawDays)) : 0;
+                long hourly = hourlyDays > 0
+                        ? historyRepository.dropHourlyBefore(metricId, cutoff(start, hourlyDays)) : 0;
+                long daily = dailyDays > 0 ? historyRepository.dropDailyBefore(metricId, cutoff(start, dailyDays)) : 0;
+                if (points + hourly + daily > 0) {
+                    result.seriesCompacted++;
+                }
+                result.pointsDropped += points;
+                result.hourlyBucketsDropped += hourly;
+                result.dailyBucketsDropped += daily;
+            } catch (IOException e) {
+                log.error("Failed to apply history retention to metric {}", metricId, e);
+            }
+        }
+
+        result.setDurationMs(System.currentTimeMillis() - start);
+        lastSweep = result;
+        if (result.seriesCompacted > 0 || result.orphansDeleted > 0) {
+            log.info("History retention: {} series compacted, {} points, {} hourly and {} daily buckets dropped, "
+                    + "{} removed metrics deleted in {}ms", result.seriesCompacted, result.pointsDropped,
+                    result.hourlyBucketsDropped, result.dailyBucketsDropped, result.orphansDeleted,
+                    result.durationMs);
+        }
+        return result;
+    }
+
+    private static long cutoff(long now, int days) {
+        return now - TimeUnit.DAYS.toMillis(days);
+    }
+
+    @Data
+    public static class SweepResult {
+        private long startedAt;
+        private long durationMs;
+        private int seriesCompacted;
+        private long pointsDropped;
+        private long hourlyBucketsDropped;
+        private long dailyBucketsDropped;
+        private int orphansDeleted; // Metrics removed from the config whose history was deleted
+    }
+}
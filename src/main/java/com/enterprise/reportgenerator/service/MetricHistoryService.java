@@ -2,7 +2,7 @@ package com.enterprise.reportgenerator.service;
 
 import com.enterprise.reportgenerator.model.MetricConfig;
 import com.enterprise.reportgenerator.model.MetricHistory;
-import com.enterprise.reportgenerator.repository.JsonMetricHistoryRepository;
+import com.enterprise.reportgenerator.repository.MetricHistoryRepository;
 import com.enterprise.reportgenerator.repository.JsonMetricRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,8 +18,9 @@ import java.util.List;
 public class MetricHistoryService {
 
     private final JsonMetricRepository metricRepository;
-    private final JsonMetricHistoryRepository historyRepository;
+    private final MetricHistoryRepository historyRepository;
     private final JdbcTemplate jdbcTemplate;
+    private final MetricCache metricCache;
 
     // Collect real data every 5 minutes
     @Scheduled(fixedRate = 300000) // 5 minutes
@@ -31,7 +32,7 @@ public class MetricHistoryService {
         for (MetricConfig metric : metrics) {
             try {
                 if (metric.getType() == null || metric.getType().equals("number")) {
-                    Number val = jdbcTemplate.queryForObject(metric.getSqlQuery(), Number.class);
+                    Number val = currentValue(metric);
                     if (val != null) {
                         historyRepository.add(new MetricHistory(metric.getId(), now, val.doubleValue()));
                         log.info("Collected data for metric '{}': {}", metric.getTitle(), val.doubleValue());
@@ -53,7 +54,7 @@ public class MetricHistoryService {
 
         try {
             if (metric.getType() == null || metric.getType().equals("number")) {
-                Number val = jdbcTemplate.queryForObject(metric.getSqlQuery(), Number.class);
+                Number val = currentValue(metric);
                 if (val != null) {
                     long now = System.currentTimeMillis();
                     historyRepository.add(new MetricHistory(metric.getId(), now, val.doubleValue()));
@@ -64,4 +65,16 @@ public class MetricHistoryService {
             log.error("Failed to manually collect data for metric '{}': {}", metric.getTitle(), e.getMessage());
         }
     }
+
+    // Job-sourced metrics read the value published by the job's last run instead of querying
+    private Number currentValue(MetricConfig metric) {
+        if (metric.getSourceJobId() != null) {
+            return metricCache.find(metric.getSourceJobId(), metric.getSourceMetricLabel())
+                    .map(MetricCache.MetricValue::getValue)
+                    .filter(Number.class::isInstance)
+                    .map(Number.class::cast)
+                    .orElse(null);
+        }
+        return jdbcTemplate.queryForObject(metric.getSqlQuery(), Number.class);
+    }
 }
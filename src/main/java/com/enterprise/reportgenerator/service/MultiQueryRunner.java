@@ -0,0 +1,192 @@
+package com.enterprise.reportgenerator.service;
+
+import com.enterprise.reportgenerator.model.JobConfig;
+import com.enterprise.reportgenerator.model.Report;
+import com.enterprise.reportgenerator.util.ExcelGenerator;
+import com.enterprise.reportgenerator.util.RowSpool;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the queries of a multi-query job concurrently on a shared, fixed-size pool.
+ * Each query spools its rows to a temp file; as soon as one finishes its rows are
+ * copied into its own sheet of the workbook (on the calling thread, since a
+ * workbook is not thread-safe). Sheets are put back into job order at the end.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MultiQueryRunner {
+
+    private final StreamingQueryExecutor queryExecutor;
+
+    @Value("${app.execution.query-threads:4}")
+    private int poolSize;
+
+    private ExecutorService pool;
+
+    @PostConstruct
+    public void init() {
+        pool = Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("multi-query-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public static boolean isMultiQuery(JobConfig job) {
+        return job.getQueries() != null && !job.getQueries().isEmpty();
+    }
+
+    public MultiQueryResult execute(List<Query> queries, Map<String, Object> params, JobConfig job,
+            ExcelGenerator writer, RunningExecutionRegistry.RunningExecution execution) throws Exception {
+        log.info("Running job {} as {} concurrent queries", job.getName(), queries.size());
+        CompletionService<QueryOutcome> completion = new ExecutorCompletionService<>(pool);
+        List<Future<QueryOutcome>> futures = new ArrayList<>();
+        MultiQueryResult result = new MultiQueryResult();
+        Map<Query, Report.QueryStat> stats = new HashMap<>();
+        try {
+            for (Query query : queries) {
+                futures.add(completion.submit(() -> run(query, params, job, execution)));
+            }
+            for (int i = 0; i < queries.size(); i++) {
+                QueryOutcome outcome = await(completion.take());
+                if (execution != null) {
+                    execution.checkCancelled();
+                }
+                try (RowSpool spool = outcome.spool) {
+                    writer.startSection(outcome.query.sheetName);
+                    spool.replayInto(writer, true);
+                }
+                stats.put(outcome.query, outcome.stat);
+                result.add(outcome);
+            }
+            writer.setSectionOrder(queries.stream().map(Query::getSheetName).collect(Collectors.toList()));
+            for (Query query : queries) {
+                result.queries.add(stats.get(query));
+            }
+            return result;
+        } catch (Exception e) {
+            for (Future<QueryOutcome> future : futures) {
+                future.cancel(true);
+            }
+            discardSpools(futures);
+            throw e;
+        }
+    }
+
+    private QueryOutcome run(Query query, Map<String, Object> params, JobConfig job,
+            RunningExecutionRegistry.RunningExecution execution) throws Exception {
+        long start = System.currentTimeMillis();
+        RowSpool spool = new RowSpool();
+        try {
+            StreamingQueryExecutor.QueryStats stats = queryExecutor.execute(query.jdbcTemplate, query.sql,
+                    new HashMap<>(params), job, spool, execution);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Query for sheet " + query.sheetName + " was cancelled");
+            }
+            long duration = System.currentTimeMillis() - start;
+            log.info("Query {} of job {} fetched {} rows in {}ms", query.sheetName, job.getName(),
+                    stats.getRowCount(), duration);
+            Report.QueryStat stat = new Report.QueryStat(query.sheetName, query.sqlFileName, query.targetDatabase,
+                    stats.getRowCount(), duration);
+            return new QueryOutcome(query, stat, stats, spool);
+        } catch (Exception e) {
+            spool.close();
+            throw e;
+        }
+    }
+
+    private QueryOutcome await(Future<QueryOutcome> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // Spools of queries that finished but were never copied; closing an already replayed spool is a no-op
+    private void discardSpools(List<Future<QueryOutcome>> futures) {
+        for (Future<QueryOutcome> future : futures) {
+            if (future.isDone() && !future.isCancelled()) {
+                try {
+                    future.get().spool.close();
+                } catch (Exception ignored) {
+                    // Failed queries clean up their own spool
+                }
+            }
+        }
+    }
+
+    /** One query of a multi-query job, resolved to its SQL and data source. */
+    public static class Query {
+        private final String sheetName;
+        private final String sqlFileName;
+        private final String targetDatabase;
+        private final JdbcTemplate jdbcTemplate;
+        private final String sql;
+
+        public Query(String sheetName, String sqlFileName, String targetDatabase, JdbcTemplate jdbcTemplate,
+                String sql) {
+            this.sheetName = sheetName;
+            this.sqlFileName = sqlFileName;
+            this.targetDatabase = targetDatabase;
+            this.jdbcTemplate = jdbcTemplate;
+            this.sql = sql;
+        }
+
+        public String getSheetName() {
+            return sheetName;
+        }
+    }
+
+    private static class QueryOutcome {
+        private final Query query;
+        private final Report.QueryStat stat;
+        private final StreamingQueryExecutor.QueryStats stats;
+        private final RowSpool spool;
+
+        QueryOutcome(Query query, Report.QueryStat stat, StreamingQueryExecutor.QueryStats stats, RowSpool spool) {
+            this.query = query;
+            this.stat = stat;
+            this.stats = stats;
+            this.spool = spool;
+        }
+    }
+
+    @lombok.Data
+    public static class MultiQueryResult {
+        private long rowCount;
+        private long fetchRoundTrips;
+        private int fetchSize;
+        private List<Report.QueryStat> queries = new ArrayList<>();
+
+        private void add(QueryOutcome outcome) {
+            rowCount += outcome.stats.getRowCount();
+            fetchRoundTrips += outcome.stats.getFetchRoundTrips();
+            fetchSize = outcome.stats.getFetchSize();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.enterprise.reportgenerator.service;
+
+import com.enterprise.reportgenerator.model.JobConfig;
+import com.enterprise.reportgenerator.model.Report;
+import com.enterprise.reportgenerator.util.ReportWriter;
+import com.enterprise.reportgenerator.util.RowSpool;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Splits a FromDate/ToDate window into sub-ranges and runs them concurrently.
+ * The first partition streams straight into the output writer; later ones spool
+ * to temp files and are appended in date order as soon as their turn comes, so
+ * at most {@code parallelism} partitions are ever in flight or on disk.
+ * Sub-ranges are inclusive on both ends, matching the "between :FromDate and :ToDate"
+ * form used by the job queries. The job's maxRows applies to the run as a whole: once
+ * it is reached, later partitions are cancelled or never started.
+ * <p>
+ * Output order is partition (date) order. The query's own ORDER BY only sorts rows
+ * within each partition, so a query ordered by anything other than the partitioned
+ * date (e.g. "order by amount desc") does not come out globally sorted, and maxRows
+ * keeps the first rows in date order rather than the top rows of that ORDER BY.
+ * Such jobs should not set partitionBy.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionedQueryRunner {
+
+    private final StreamingQueryExecutor queryExecutor;
+
+    @Value("${app.execution.partition-threads:4}")
+    private int poolSize;
+
+    @Value("${app.execution.partition-parallelism:4}")
+    private int defaultParallelism;
+
+    private ExecutorService pool;
+
+    @PostConstruct
+    public void init() {
+        pool = Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("query-partition-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public static boolean isPartitioned(JobConfig job) {
+        return job.getPartitionBy() != null && !job.getPartitionBy().isEmpty()
+                && !"NONE".equalsIgnoreCase(job.getPartitionBy());
+    }
+
+    public PartitionedResult execute(JdbcTemplate jdbcTemplate, String sql, Map<String, Object> params,
+            JobConfig job, LocalDate from, LocalDate to, ReportWriter writer,
+            RunningExecutionRegistry.RunningExecution execution) throws Exception {
+        List<LocalDate[]> ranges = splitRange(from, to, job.getPartitionBy());
+        int parallelism = job.getPartitionParallelism() != null && job.getPartitionParallelism() > 0
+                ? job.getPartitionParallelism()
+                : defaultParallelism;
+        log.info("Running job {} as {} {} partitions (parallelism {})", job.getName(), ranges.size(),
+                job.getPartitionBy(), parallelism);
+
+        List<Future<PartitionOutcome>> futures = new ArrayList<>();
+        PartitionedResult result = new PartitionedResult();
+        Integer maxRows = IncrementalReportService.effectiveMaxRows(job);
+        long remaining = maxRows != null && maxRows > 0 ? maxRows : Long.MAX_VALUE;
+        try {
+            int submitted = 0;
+            for (; submitted < Math.min(parallelism, ranges.size()); submitted++) {
+                futures.add(submit(jdbcTemplate, sql, params, job, ranges.get(submitted),
+                        submitted == 0 ? writer : null, execution));
+            }
+
+            for (int i = 0; i < ranges.size(); i++) {
+                PartitionOutcome outcome = await(futures.get(i));
+                if (execution != null) {
+                    execution.checkCancelled();
+                }
+                long written = outcome.stats.getRowCount(); // The first partition wrote directly
+                if (outcome.spool != null) {
+                    try (RowSpool spool = outcome.spool) {
+                        written = spool.replayInto(writer, false, remaining);
+                    }
+                }
+                remaining -= written;
+                result.add(outcome, written);
+
+                // maxRows caps the whole run, in date order, like an unpartitioned query
+                if (remaining <= 0 && i + 1 < ranges.size()) {
+                    log.info("Job {} reached maxRows ({}) in partition {}..{}; skipping the remaining {}",
+                            job.getName(), maxRows, outcome.stat.getFromDate(), outcome.stat.getToDate(),
+                            ranges.size() - i - 1);
+                    List<Future<PartitionOutcome>> pending = futures.subList(i + 1, futures.size());
+                    for (Future<PartitionOutcome> future : pending) {
+                        future.cancel(true);
+                    }
+                    discardSpools(pending);
+                    break;
+                }
+
+                if (submitted < ranges.size()) {
+                    futures.add(submit(jdbcTemplate, sql, params, job, ranges.get(submitted), null, execution));
+                    submitted++;
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            for (Future<PartitionOutcome> future : futures) {
+                future.cancel(true);
+            }
+            discardSpools(futures);
+            throw e;
+        }
+    }
+
+    private Future<PartitionOutcome> submit(JdbcTemplate jdbcTemplate, String sql, Map<String, Object> baseParams,
+            JobConfig job, LocalDate[] range, ReportWriter directWriter,
+            RunningExecutionRegistry.RunningExecution execution) {
+        return pool.submit(() -> {
+            Map<String, Object> params = new HashMap<>(baseParams);
+            params.put("FromDate", java.sql.Date.valueOf(range[0]));
+            params.put("ToDate", java.sql.Date.valueOf(range[1]));
+
+            long start = System.currentTimeMillis();
+            RowSpool spool = directWriter == null ? new RowSpool() : null;
+            try {
+                StreamingQueryExecutor.QueryStats stats = queryExecutor.execute(jdbcTemplate, sql, params, job,
+                        directWriter != null ? directWriter : spool, execution);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("Partition " + range[0] + ".." + range[1] + " was cancelled");
+                }
+                long duration = System.currentTimeMillis() - start;
+                log.info("Partition {}..{} of job {} fetched {} rows in {}ms", range[0], range[1], job.getName(),
+                        stats.getRowCount(), duration);
+                Report.PartitionStat stat = new Report.PartitionStat(range[0].toString(), range[1].toString(),
+                        stats.getRowCount(), duration);
+                return new PartitionOutcome(stat, stats, spool);
+            } catch (Exception e) {
+                if (spool != null) {
+                    spool.close();
+                }
+                throw e;
+            }
+        });
+    }
+
+    private PartitionOutcome await(Future<PartitionOutcome> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void discardSpools(List<Future<PartitionOutcome>> futures) {
+        for (Future<PartitionOutcome> future : futures) {
+            if (future.isDone() && !future.isCancelled()) {
+                try {
+                    PartitionOutcome outcome = future.get();
+                    if (outcome.spool != null) {
+                        outcome.spool.close();
+                    }
+                } catch (Exception ignored) {
+                    // Failed partitions clean up their own spool
+                }
+            }
+        }
+    }
+
+    static List<LocalDate[]> splitRange(LocalDate from, LocalDate to, String unit) {
+        List<LocalDate[]> ranges = new ArrayList<>();
+        LocalDate start = from;
+        while (!start.isAfter(to)) {
+            LocalDate end;
+            switch (unit.toUpperCase()) {
+                case "DAY":
+                    end = start;
+                    break;
+                case "WEEK":
+                    end = start.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+                    break;
+                case "MONTH":
+                    end = start.with(TemporalAdjusters.lastDayOfMonth());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported partitionBy: " + unit + " (expected DAY, WEEK or MONTH)");
+            }
+            if (end.isAfter(to)) {
+                end = to;
+            }
+            ranges.add(new LocalDate[] { start, end });
+            start = end.plusDays(1);
+        }
+        return ranges;
+    }
+
+    private static class PartitionOutcome {
+        private final Report.PartitionStat stat;
+        private final StreamingQueryExecutor.QueryStats stats;
+        private final RowSpool spool;
+
+        PartitionOutcome(Report.PartitionStat stat, StreamingQueryExecutor.QueryStats stats, RowSpool spool) {
+            this.stat = stat;
+            this.stats = stats;
+            this.spool = spool;
+        }
+    }
+
+    @lombok.Data
+    public static class PartitionedResult {
+        private long rowCount;
+        private long fetchRoundTrips;
+        private int fetchSize;
+        private List<Report.PartitionStat> partitions = new ArrayList<>();
+
+        private void add(PartitionOutcome outcome, long written) {
+            rowCount += written;
+            fetchRoundTrips += outcome.stats.getFetchRoundTrips();
+            fetchSize = outcome.stats.getFetchSize();
+            partitions.add(outcome.stat);
+        }
+    }
+}
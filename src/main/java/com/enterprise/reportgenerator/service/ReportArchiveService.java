@@ -0,0 +1,291 @@
+package com.enterprise.reportgenerator.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Packs old day folders of the output directory into one zip per day under
+ * output/archive. Files that are already compressed (xlsx, gz) are STORED, so a
+ * download is a plain byte region of the zip and keeps range support; text
+ * formats are deflated. Each zip has a sidecar index (zip name + ".json") with
+ * the offset and size of every entry, loaded at startup, so reports whose
+ * original path is gone are still found by path.
+ */
+@Service
+@Slf4j
+public class ReportArchiveService {
+
+    private static final String INDEX_SUFFIX = ".json";
+
+    private final ObjectMapper objectMapper;
+    private final Path archiveDir;
+
+    // "day/fileName" -> where that file lives now
+    private final Map<String, ArchivedFile> entries = new ConcurrentHashMap<>();
+
+    public ReportArchiveService(ObjectMapper objectMapper,
+            @Value("${app.config.output-path:data/reports}") String outputBasePath) {
+        this.objectMapper = objectMapper;
+        this.archiveDir = Paths.get(outputBasePath, "archive");
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!Files.isDirectory(archiveDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> indexes = Files.newDirectoryStream(archiveDir, "*.zip" + INDEX_SUFFIX)) {
+            for (Path index : indexes) {
+                for (ArchivedFile file : readIndex(index)) {
+                    entries.put(file.getKey(), file);
+                }
+            }
+            log.info("Loaded {} archived report files from {}", entries.size(), archiveDir);
+        } catch (IOException e) {
+            log.error("Failed to load archive indexes from {}", archiveDir, e);
+        }
+    }
+
+    /** The archived copy of a report file whose original path no longer exists. */
+    public Optional<ArchivedFile> locate(String filePath) {
+        return filePath == null ? Optional.empty() : Optional.ofNullable(entries.get(keyOf(Paths.get(filePath))));
+    }
+
+    public Path archivePath(ArchivedFile file) {
+        return archiveDir.resolve(file.getArchive());
+    }
+
+    public Path getArchiveDir() {
+        return archiveDir;
+    }
+
+    /**
+     * Zips every file of a day folder and deletes the folder. The zip is written
+     * under a temp name and moved into place before any original is removed.
+     *
+     * @return bytes saved (original sizes minus zip and index size)
+     */
+    public synchronized long archiveDayFolder(Path dayDir) throws IOException {
+        String day = dayDir.getFileName().toString();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dayDir)) {
+            files = list.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        if (files.isEmpty()) {
+            deleteIfEmpty(dayDir);
+            return 0;
+        }
+
+        Files.createDirectories(archiveDir);
+        String zipName = freeArchiveName(day);
+        Path zipPath = archiveDir.resolve(zipName);
+        Path tmp = archiveDir.resolve(zipName + ".tmp");
+        List<ArchivedFile> archived = new ArrayList<>();
+        long originalBytes = 0;
+        try {
+            try (CountingOutputStream counter = new CountingOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024));
+                    ZipOutputStream zip = new ZipOutputStream(counter)) {
+                for (Path file : files) {
+                    long size = Files.size(file);
+                    long lastModified = Files.getLastModifiedTime(file).toMillis();
+                    boolean stored = isCompressed(file);
+                    ZipEntry entry = new ZipEntry(file.getFileName().toString());
+                    entry.setTime(lastModified);
+                    if (stored) {
+                        // STORED entries need size and CRC up front
+                        entry.setMethod(ZipEntry.STORED);
+                        entry.setSize(size);
+                        entry.setCompressedSize(size);
+                        entry.setCrc(crc32(file));
+                    }
+                    zip.putNextEntry(entry);
+                    Files.copy(file, zip);
+                    zip.closeEntry();
+                    // A STORED entry has no data descriptor, so its data ends where the counter is now
+                    long offset = stored ? counter.count - size : -1;
+                    archived.add(new ArchivedFile(day + "/" + entry.getName(), zipName, entry.getName(),
+                            offset, size, lastModified, stored));
+                    originalBytes += size;
+                }
+            }
+            writeIndex(zipPath, archived);
+            Files.move(tmp, zipPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            Files.deleteIfExists(indexPath(zipPath));
+            throw e;
+        }
+
+        for (ArchivedFile file : archived) {
+            entries.put(file.getKey(), file);
+        }
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        deleteIfEmpty(dayDir);
+        long saved = originalBytes - Files.size(zipPath) - Files.size(indexPath(zipPath));
+        log.info("Archived {} files of {} into {} ({} bytes saved)", files.size(), day, zipPath, saved);
+        return saved;
+    }
+
+    /**
+     * Forgets archived files that no report references any more. A zip whose
+     * entries are all gone is deleted; otherwise its index is rewritten and the
+     * space comes back once the rest of the day expires.
+     *
+     * @return bytes reclaimed on disk
+     */
+    public synchronized long remove(Collection<String> filePaths) {
+        Set<String> archives = new HashSet<>();
+        for (String filePath : filePaths) {
+            ArchivedFile removed = entries.remove(keyOf(Paths.get(filePath)));
+            if (removed != null) {
+                archives.add(removed.getArchive());
+            }
+        }
+        long reclaimed = 0;
+        for (String archive : archives) {
+            Path zipPath = archiveDir.resolve(archive);
+            List<ArchivedFile> remaining = entries.values().stream()
+                    .filter(f -> f.getArchive().equals(archive))
+                    .collect(Collectors.toList());
+            try {
+                if (remaining.isEmpty()) {
+                    long size = Files.exists(zipPath) ? Files.size(zipPath) : 0;
+                    Files.deleteIfExists(zipPath);
+                    Files.deleteIfExists(indexPath(zipPath));
+                    reclaimed += size;
+                    log.info("Deleted archive {}: no report references it", zipPath);
+                } else {
+                    writeIndex(zipPath, remaining);
+                }
+            } catch (IOException e) {
+                log.error("Failed to update archive {}", zipPath, e);
+            }
+        }
+        return reclaimed;
+    }
+
+    private static String keyOf(Path filePath) {
+        Path parent = filePath.getParent();
+        String day = parent != null ? parent.getFileName().toString() : "";
+        return day + "/" + filePath.getFileName();
+    }
+
+    private static boolean isCompressed(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".xlsx") || name.endsWith(".gz") || name.endsWith(".zip");
+    }
+
+    // A day archived again (files written into it after the first pass) gets day_2.zip and so on
+    private String freeArchiveName(String day) {
+        String name = day + ".zip";
+        for (int n = 2; Files.exists(archiveDir.resolve(name)); n++) {
+            name = day + "_" + n + ".zip";
+        }
+        return name;
+    }
+
+    private static Path indexPath(Path zipPath) {
+        return zipPath.resolveSibling(zipPath.getFileName() + INDEX_SUFFIX);
+    }
+
+    private List<ArchivedFile> readIndex(Path index) throws IOException {
+        return objectMapper.readValue(index.toFile(), new TypeReference<List<ArchivedFile>>() {
+        });
+    }
+
+    private void writeIndex(Path zipPath, List<ArchivedFile> files) throws IOException {
+        Path index = indexPath(zipPath);
+        Path tmp = index.resolveSibling(index.getFileName() + ".tmp");
+        objectMapper.writeValue(tmp.toFile(), files);
+        Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long crc32(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void deleteIfEmpty(Path dir) throws IOException {
+        try (Stream<Path> list = Files.list(dir)) {
+            if (list.findAny().isPresent()) {
+                return;
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    /** Where an archived report file lives: its zip, and for STORED entries the byte region. */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ArchivedFile {
+        private String key; // day/fileName
+        private String archive; // Zip file name inside the archive folder
+        private String entryName;
+        private long offset; // Data offset of a STORED entry, -1 when deflated
+        private long size; // Uncompressed size
+        private long lastModified; // Of the original file, so ETags survive archiving
+        private boolean stored;
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
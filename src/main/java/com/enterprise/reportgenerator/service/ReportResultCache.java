@@ -0,0 +1,127 @@
+package com.enterprise.reportgenerator.service;
+
+import com.enterprise.reportgenerator.model.Report;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers which report file was produced for a given SQL text, bound parameters
+ * and target database. A job with a result cache TTL reuses that file instead of
+ * running the same query again. Entries expire after the job's TTL and the least
+ * recently used ones are evicted beyond app.cache.report.max-entries.
+ */
+@Component
+@Slf4j
+public class ReportResultCache {
+
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ReportResultCache(@Value("${app.cache.report.max-entries:200}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ReportResultCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Cache key: SHA-256 over the SQL text, parameters (sorted by name) and database.
+     * Extra settings that change the result set (e.g. maxRows) are passed as parameters too.
+     */
+    public String keyFor(String sql, Map<String, ?> params, String database) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(sql.getBytes(StandardCharsets.UTF_8));
+            for (Map.Entry<String, ?> param : new TreeMap<>(params).entrySet()) {
+                Object value = param.getValue();
+                String encoded = "\u0000" + param.getKey() + "="
+                        + (value == null ? "null" : value.getClass().getName() + ":" + value);
+                digest.update(encoded.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update(("\u0000" + database).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public synchronized Optional<Entry> lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        if (entry.expiresAt < System.currentTimeMillis() || !new File(entry.report.getFilePath()).exists()) {
+            entries.remove(key);
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        return Optional.of(entry);
+    }
+
+    public synchronized void put(String key, Report report, int ttlSeconds) {
+        entries.put(key, new Entry(report, System.currentTimeMillis() + ttlSeconds * 1000L));
+    }
+
+    // Drops entries whose file is about to be deleted
+    public synchronized void evictFile(String filePath) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().report.getFilePath().equals(filePath)) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("evictions", evictions.get());
+        stats.put("entries", entries.size());
+        stats.put("maxEntries", maxEntries);
+        return stats;
+    }
+
+    public static class Entry {
+        private final Report report;
+        private final long expiresAt;
+
+        Entry(Report report, long expiresAt) {
+            this.report = report;
+            this.expiresAt = expiresAt;
+        }
+
+        public Report getReport() {
+            return report;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.enterprise.reportgenerator.service;
+
+import com.enterprise.reportgenerator.model.JobConfig;
+import com.enterprise.reportgenerator.model.Report;
+import com.enterprise.reportgenerator.repository.JsonConfigRepository;
+import com.enterprise.reportgenerator.repository.JsonReportRepository;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the output directory and reports.json bounded. A sweep purges reports
+ * beyond each job's retention (newest N runs and/or D days), deletes their files
+ * unless a surviving report still points at them, removes the rows in one batch,
+ * and then zips day folders older than app.retention.archive-after-days.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReportRetentionService {
+
+    private final JsonReportRepository reportRepository;
+    private final JsonConfigRepository configRepository;
+    private final ReportArchiveService archiveService;
+    private final ReportResultCache resultCache;
+
+    @Value("${app.config.output-path:data/reports}")
+    private String outputBasePath;
+
+    @Value("${app.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.retention.default-keep-runs:0}")
+    private int defaultKeepRuns;
+
+    @Value("${app.retention.default-keep-days:0}")
+    private int defaultKeepDays;
+
+    @Value("${app.retention.archive-after-days:30}")
+    private int archiveAfterDays;
+
+    private volatile SweepResult lastSweep;
+
+    @Scheduled(cron = "${app.retention.cron:0 30 2 * * *}")
+    public void scheduledSweep() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    public SweepResult getLastSweep() {
+        return lastSweep;
+    }
+
+    public synchronized SweepResult sweep() {
+        long start = System.currentTimeMillis();
+        SweepResult result = new SweepResult();
+        result.setStartedAt(start);
+
+        List<Report> reports = reportRepository.findAll();
+        Map<String, JobConfig> jobs = configRepository.findAll().stream()
+                .collect(Collectors.toMap(JobConfig::getId, Function.identity(), (a, b) -> a));
+        Set<String> expiredIds = findExpired(reports, jobs, start);
+
+        purge(reports, expiredIds, result);
+
+        archiveOldDays(result);
+
+        result.setDurationMs(System.currentTimeMillis() - start);
+        lastSweep = result;
+        log.info("Retention sweep: {} reports purged, {} files deleted, {} bytes reclaimed, "
+                + "{} day folders archived ({} bytes saved) in {}ms", result.reportsPurged, result.filesDeleted,
+                result.bytesReclaimed, result.foldersArchived, result.bytesSavedByArchiving, result.durationMs);
+        return result;
+    }
+
+    /**
+     * Deletes one report, together with its files (loose or archived) unless
+     * another report still references them. Returns false when it does not exist.
+     */
+    public synchronized boolean delete(String reportId) {
+        if (reportRepository.findById(reportId).isEmpty()) {
+            return false;
+        }
+        SweepResult result = new SweepResult();
+        purge(reportRepository.findAll(), Set.of(reportId), result);
+        log.info("Deleted report {}: {} files deleted, {} bytes reclaimed", reportId, result.filesDeleted,
+                result.bytesReclaimed);
+        return true;
+    }
+
+    // Removes the given reports and every file of theirs no other report references
+    private void purge(List<Report> reports, Set<String> ids, SweepResult result) {
+        // A file goes only when no surviving report (e.g. a result cache hit) still references it
+        Set<String> keptPaths = new HashSet<>();
+        for (Report report : reports) {
+            if (!ids.contains(report.getId())) {
+                keptPaths.addAll(filesOf(report));
+            }
+        }
+        Set<String> handled = new HashSet<>();
+        List<String> archivedPaths = new ArrayList<>();
+        for (Report report : reports) {
+            if (!ids.contains(report.getId())) {
+                continue;
+            }
+            if (report.getFilePath() != null && !keptPaths.contains(report.getFilePath())) {
+                resultCache.evictFile(report.getFilePath());
+            }
+            for (String path : filesOf(report)) {
+                if (keptPaths.contains(path) || !handled.add(path)) {
+                    continue;
+                }
+                Path file = Paths.get(path);
+                try {
+                    if (Files.exists(file)) {
+                        long size = Files.size(file);
+                        Files.delete(file);
+                        result.filesDeleted++;
+                        result.bytesReclaimed += size;
+                    } else {
+                        archivedPaths.add(path);
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not delete report file {}: {}", path, e.getMessage());
+                }
+            }
+        }
+        result.bytesReclaimed += archiveService.remove(archivedPaths);
+        result.reportsPurged = reportRepository.deleteAllById(ids);
+    }
+
+    private Set<String> findExpired(List<Report> reports, Map<String, JobConfig> jobs, long now) {
+        Map<String, List<Report>> byJob = reports.stream()
+                .filter(r -> r.getJobId() != null)
+                .collect(Collectors.groupingBy(Report::getJobId));
+        Set<String> expired = new HashSet<>();
+        for (Map.Entry<String, List<Report>> entry : byJob.entrySet()) {
+            JobConfig job = jobs.get(entry.getKey());
+            int keepRuns = job != null && job.getRetentionKeepRuns() != null ? job.getRetentionKeepRuns()
+                    : defaultKeepRuns;
+            int keepDays = job != null && job.getRetentionKeepDays() != null ? job.getRetentionKeepDays()
+                    : defaultKeepDays;
+            if (keepRuns <= 0 && keepDays <= 0) {
+                continue;
+            }
+            long cutoff = keepDays > 0 ? now - TimeUnit.DAYS.toMillis(keepDays) : Long.MIN_VALUE;
+            // One run can save several reports (burst slices, delta plus cumulative); they share
+            // generatedAt, so runs are counted and kept or expired as a whole
+            TreeMap<Long, List<Report>> runs = entry.getValue().stream()
+                    .collect(Collectors.groupingBy(Report::getGeneratedAt, TreeMap::new, Collectors.toList()));
+            int i = 0;
+            for (Map.Entry<Long, List<Report>> run : runs.descendingMap().entrySet()) {
+                if ((keepRuns > 0 && i >= keepRuns) || run.getKey() < cutoff) {
+                    for (Report report : run.getValue()) {
+                        expired.add(report.getId());
+                    }
+                }
+                i++;
+            }
+        }
+        return expired;
+    }
+
+    // FAILED/CANCELLED reports have an empty filePath, which would resolve to the working directory
+    private static List<String> filesOf(Report report) {
+        List<String> files = report.getPartFiles() != null
+                ? report.getPartFiles()
+                : Collections.singletonList(report.getFilePath());
+        return files.stream()
+                .filter(file -> file != null && !file.isBlank())
+                .collect(Collectors.toList());
+    }
+
+    // Day folders are named yyyy-MM-dd; archive, cumulative and anything else is left alone
+    private void archiveOldDays(SweepResult result) {
+        if (archiveAfterDays <= 0) {
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(archiveAfterDays);
+        Path outputDir = Paths.get(outputBasePath);
+        if (!Files.isDirectory(outputDir)) {
+            return;
+        }
+        List<Path> dayDirs;
+        try (Stream<Path> list = Files.list(outputDir)) {
+            dayDirs = list.filter(Files::isDirectory)
+                    .filter(dir -> isDayBefore(dir, cutoff))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error("Failed to list {}", outputDir, e);
+            return;
+        }
+        for (Path dayDir : dayDirs) {
+            try {
+                result.bytesSavedByArchiving += archiveService.archiveDayFolder(dayDir);
+                result.foldersArchived++;
+            } catch (IOException e) {
+                log.error("Failed to archive {}", dayDir, e);
+            }
+        }
+    }
+
+    private static boolean isDayBefore(Path dir, LocalDate cutoff) {
+        try {
+            return LocalDate.parse(dir.getFileName().toString()).isBefore(cutoff);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SweepResult {
+        private long startedAt;
+        private long durationMs;
+        private int reportsPurged;
+        private int filesDeleted;
+        private long bytesReclaimed; // Deleted files plus archives that became empty
+        private int foldersArchived;
+        private long bytesSavedByArchiving;
+    }
+}
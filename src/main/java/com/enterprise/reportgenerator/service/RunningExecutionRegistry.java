@@ -0,0 +1,116 @@
+package com.enterprise.reportgenerator.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks queued and running job executions by report id, together with the JDBC
+ * statements they currently have open, so a runaway query can be stopped with
+ * Statement.cancel() instead of killing the Oracle session by hand.
+ */
+@Component
+@Slf4j
+public class RunningExecutionRegistry {
+
+    private final Map<String, RunningExecution> executions = new ConcurrentHashMap<>();
+
+    public RunningExecution register(String reportId, String jobId, String jobName) {
+        return executions.computeIfAbsent(reportId, id -> new RunningExecution(id, jobId, jobName));
+    }
+
+    public void unregister(String reportId) {
+        executions.remove(reportId);
+    }
+
+    public Optional<RunningExecution> find(String reportId) {
+        return Optional.ofNullable(executions.get(reportId));
+    }
+
+    public List<RunningExecution> findAll() {
+        return new ArrayList<>(executions.values());
+    }
+
+    public List<RunningExecution> findByJobId(String jobId) {
+        return executions.values().stream()
+                .filter(e -> e.getJobId().equals(jobId))
+                .collect(Collectors.toList());
+    }
+
+    public boolean cancel(String reportId) {
+        RunningExecution execution = executions.get(reportId);
+        if (execution == null) {
+            return false;
+        }
+        execution.cancel();
+        return true;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class RunningExecution {
+        private final String reportId;
+        private final String jobId;
+        private final String jobName;
+        private final long submittedAt = System.currentTimeMillis();
+        private volatile long startedAt; // 0 while still queued
+        private volatile boolean cancelled;
+
+        @JsonIgnore
+        private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+        public String getState() {
+            if (cancelled) {
+                return "CANCELLING";
+            }
+            return startedAt == 0 ? "QUEUED" : "RUNNING";
+        }
+
+        public void markStarted() {
+            startedAt = System.currentTimeMillis();
+        }
+
+        public void attach(Statement statement) {
+            statements.add(statement);
+            if (cancelled) {
+                // Cancelled between borrowing the connection and executing
+                statements.remove(statement);
+                throw new ExecutionCancelledException(reportId);
+            }
+        }
+
+        public void detach(Statement statement) {
+            statements.remove(statement);
+        }
+
+        public void checkCancelled() {
+            if (cancelled) {
+                throw new ExecutionCancelledException(reportId);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            for (Statement statement : statements) {
+                try {
+                    statement.cancel();
+                    log.info("Cancelled running statement of report {}", reportId);
+                } catch (SQLException e) {
+                    log.warn("Could not cancel statement of report {}: {}", reportId, e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -20,7 +20,7 @@ public class SchedulerService {
 
     private final TaskScheduler taskScheduler;
     private final JsonConfigRepository jobRepository;
-    private final JobExecutionService jobExecutionService;
+    private final JobExecutionEngine jobExecutionEngine;
 
     private final Map<String, ScheduledFuture<?>> scheduledTasks = new ConcurrentHashMap<>();
 
@@ -55,7 +55,14 @@ public class SchedulerService {
     }
 
     private void executeJob(String jobId) {
-        jobExecutionService.executeJob(jobId);
+        try {
+            JobExecutionEngine.Submission submission = jobExecutionEngine.submit(jobId, "SCHEDULED");
+            if (submission.getStatus() == JobExecutionEngine.Status.REJECTED) {
+                log.warn("Skipped scheduled run of job {}: execution queue is full", jobId);
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipped scheduled run: {}", e.getMessage());
+        }
     }
 
     public boolean isJobScheduled(String jobId) {
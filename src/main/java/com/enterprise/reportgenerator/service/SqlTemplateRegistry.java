@@ -0,0 +1,226 @@
+package com.enterprise.reportgenerator.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-memory copy of the job SQL files under app.config.sql-path. Files are read
+ * and parsed once; edits made through JobController update the entry directly and
+ * changes made on disk by other means are picked up through a WatchService.
+ */
+@Component
+@Slf4j
+public class SqlTemplateRegistry {
+
+    private static final int PARSED_CACHE_LIMIT = 256;
+
+    @Value("${app.config.sql-path:data/sql}")
+    private String sqlBasePath;
+
+    private final Map<String, SqlTemplate> templates = new ConcurrentHashMap<>();
+
+    // Bumped before every invalidation, so a load that raced with one does not keep its stale copy
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Parsed statements by SQL text, including derived SQL such as incremental wrappers
+    private final Map<String, ParsedSql> parsedCache = new LinkedHashMap<>(PARSED_CACHE_LIMIT, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ParsedSql> eldest) {
+            return size() > PARSED_CACHE_LIMIT;
+        }
+    };
+
+    private WatchService watchService;
+    private Thread watchThread;
+
+    @PostConstruct
+    public void init() {
+        Path dir = Paths.get(sqlBasePath);
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(Files::isRegularFile).forEach(p -> load(p.getFileName().toString()));
+            }
+            log.info("Loaded {} SQL templates from {}", templates.size(), dir.toAbsolutePath());
+
+            watchService = FileSystems.getDefault().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watchThread = new Thread(this::watchLoop, "sql-template-watcher");
+            watchThread.setDaemon(true);
+            watchThread.start();
+        } catch (IOException e) {
+            log.error("Could not initialize SQL template registry for {}: {}", dir, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    log.info("SQL directory watch overflowed; dropping all cached templates");
+                    invalidations.incrementAndGet();
+                    templates.clear();
+                    continue;
+                }
+                String fileName = event.context().toString();
+                invalidations.incrementAndGet();
+                if (templates.remove(fileName) != null) {
+                    log.debug("SQL template {} changed on disk ({})", fileName, event.kind().name());
+                }
+            }
+            if (!key.reset()) {
+                log.warn("SQL directory {} is no longer watched", sqlBasePath);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the template for a job's SQL file, reading it from disk only if it is
+     * not cached yet. Empty when the file does not exist.
+     */
+    public Optional<SqlTemplate> get(String fileName) {
+        SqlTemplate template = templates.get(fileName);
+        if (template != null) {
+            return Optional.of(template);
+        }
+        return Optional.ofNullable(load(fileName));
+    }
+
+    // Writes the SQL file and replaces the cached template; unchanged SQL is not rewritten
+    public void save(String fileName, String sql) throws IOException {
+        Optional<SqlTemplate> current = get(fileName);
+        if (current.isPresent() && current.get().getSql().equals(sql)) {
+            return;
+        }
+        Path path = Paths.get(sqlBasePath, fileName);
+        Files.createDirectories(path.getParent());
+        Files.write(path, sql.getBytes(StandardCharsets.UTF_8));
+        templates.put(fileName, new SqlTemplate(fileName, sql, parse(sql)));
+    }
+
+    public void invalidate(String fileName) {
+        invalidations.incrementAndGet();
+        templates.remove(fileName);
+    }
+
+    public ParsedSql parse(String sql) {
+        synchronized (parsedCache) {
+            return parsedCache.computeIfAbsent(sql, NamedParameterUtils::parseSqlStatement);
+        }
+    }
+
+    /**
+     * Names of the :named parameters in the statement (in order of first use)
+     * that have no value in the given map.
+     */
+    public List<String> findMissingParameters(String sql, Map<String, ?> params) {
+        List<String> missing = new ArrayList<>();
+        for (String name : parameterNames(parse(sql))) {
+            if (!params.containsKey(name)) {
+                missing.add(name);
+            }
+        }
+        return missing;
+    }
+
+    private SqlTemplate load(String fileName) {
+        Path path = Paths.get(sqlBasePath, fileName);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        long seen = invalidations.get();
+        try {
+            String sql = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            SqlTemplate template = new SqlTemplate(fileName, sql, parse(sql));
+            templates.put(fileName, template);
+            if (invalidations.get() != seen) {
+                // The file may have changed after it was read; let the next get read it again
+                templates.remove(fileName, template);
+            }
+            return template;
+        } catch (IOException e) {
+            log.error("Failed to read SQL file {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<String> parameterNames(ParsedSql parsedSql) {
+        return NamedParameterUtils.buildSqlParameterList(parsedSql, new MapSqlParameterSource()).stream()
+                .map(SqlParameter::getName)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    public static class SqlTemplate {
+        private final String fileName;
+        private final String sql;
+        private final ParsedSql parsedSql;
+        private final List<String> parameterNames;
+
+        SqlTemplate(String fileName, String sql, ParsedSql parsedSql) {
+            this.fileName = fileName;
+            this.sql = sql;
+            this.parsedSql = parsedSql;
+            this.parameterNames = parameterNames(parsedSql);
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public ParsedSql getParsedSql() {
+            return parsedSql;
+        }
+
+        public List<String> getParameterNames() {
+            return parameterNames;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.enterprise.reportgenerator.service;
+
+import com.enterprise.reportgenerator.model.JobConfig;
+import com.enterprise.reportgenerator.util.ReportWriter;
+import com.enterprise.reportgenerator.util.ResultSetStreamer;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a job query with its own statement settings and streams the rows into a
+ * {@link ReportWriter}. The shared JdbcTemplates keep driver defaults; tuning is
+ * applied per statement so one job's settings never leak into another's.
+ * <p>
+ * Every statement holds one of its database's session permits while it runs.
+ * This is the cap on concurrent job sessions per database: a run may issue several
+ * statements at once (partitions, multi-query sheets, possibly on both databases),
+ * so the engine's worker count alone does not bound them. A statement waits for a
+ * permit before borrowing a connection.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StreamingQueryExecutor {
+
+    @org.springframework.beans.factory.annotation.Qualifier("secondaryJdbcTemplate")
+    private final JdbcTemplate secondaryJdbcTemplate;
+
+    private final SqlTemplateRegistry sqlTemplates;
+
+    // Used when a job does not set its own fetch size (Oracle's driver default is 10)
+    @Value("${app.jdbc.default-fetch-size:1000}")
+    private int defaultFetchSize;
+
+    @Value("${app.execution.primary.max-sessions:4}")
+    private int primarySessions;
+
+    @Value("${app.execution.secondary.max-sessions:2}")
+    private int secondarySessions;
+
+    private Semaphore primaryPermits;
+    private Semaphore secondaryPermits;
+
+    @PostConstruct
+    public void init() {
+        primaryPermits = new Semaphore(primarySessions, true); // Fair: statements start in arrival order
+        secondaryPermits = new Semaphore(secondarySessions, true);
+    }
+
+    public QueryStats execute(JdbcTemplate jdbcTemplate, String sql, Map<String, ?> params, JobConfig job,
+            ReportWriter writer, RunningExecutionRegistry.RunningExecution execution) {
+        String database = jdbcTemplate == secondaryJdbcTemplate ? "SECONDARY" : "PRIMARY";
+        Semaphore permits = jdbcTemplate == secondaryJdbcTemplate ? secondaryPermits : primaryPermits;
+        acquireSession(permits, database, job, execution);
+        try {
+            return executeStatement(jdbcTemplate, sql, params, job, writer, execution);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Waits for a free session on the database; a cancelled run stops waiting
+    private void acquireSession(Semaphore permits, String database, JobConfig job,
+            RunningExecutionRegistry.RunningExecution execution) {
+        try {
+            if (permits.tryAcquire()) {
+                return;
+            }
+            log.info("Job {} waiting for a {} session", job.getName(), database);
+            while (!permits.tryAcquire(1, TimeUnit.SECONDS)) {
+                if (execution != null) {
+                    execution.checkCancelled();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a " + database + " session", e);
+        }
+    }
+
+    private QueryStats executeStatement(JdbcTemplate jdbcTemplate, String sql, Map<String, ?> params, JobConfig job,
+            ReportWriter writer, RunningExecutionRegistry.RunningExecution execution) {
+        ParsedSql parsedSql = sqlTemplates.parse(sql); // Partitions and repeat runs reuse the parsed statement
+        MapSqlParameterSource paramSource = new MapSqlParameterSource(params);
+        String sqlToUse = NamedParameterUtils.substituteNamedParameters(parsedSql, paramSource);
+        Object[] args = NamedParameterUtils.buildValueArray(parsedSql, paramSource, null);
+
+        int[] effectiveFetchSize = new int[1];
+        PreparedStatement[] statement = new PreparedStatement[1];
+        PreparedStatementCreator creator = con -> {
+            PreparedStatement ps = con.prepareStatement(sqlToUse, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            if (execution != null) {
+                try {
+                    execution.attach(ps); // Makes the statement reachable from the cancel endpoints
+                } catch (ExecutionCancelledException e) {
+                    ps.close();
+                    throw e;
+                }
+            }
+            statement[0] = ps;
+            applyStatementSettings(ps, job);
+            effectiveFetchSize[0] = ps.getFetchSize();
+            new ArgumentPreparedStatementSetter(args).setValues(ps);
+            return ps;
+        };
+
+        ResultSetStreamer streamer = execution != null
+                ? new ResultSetStreamer(writer, execution::isCancelled)
+                : new ResultSetStreamer(writer);
+
+        long start = System.currentTimeMillis();
+        Long rows;
+        try {
+            rows = jdbcTemplate.query(creator, streamer);
+        } finally {
+            if (execution != null && statement[0] != null) {
+                execution.detach(statement[0]);
+            }
+        }
+        long rowCount = rows != null ? rows : 0;
+
+        int fetchSize = effectiveFetchSize[0];
+        // Every fetch returns up to fetchSize rows; the last one is partial or empty
+        long roundTrips = fetchSize > 0 ? rowCount / fetchSize + 1 : 0;
+        long elapsed = System.currentTimeMillis() - start;
+        log.info("Fetched {} rows in {}ms (fetchSize={}, ~{} round trips)", rowCount, elapsed, fetchSize, roundTrips);
+        return new QueryStats(rowCount, fetchSize, roundTrips);
+    }
+
+    private void applyStatementSettings(PreparedStatement ps, JobConfig job) throws java.sql.SQLException {
+        int fetchSize = job.getFetchSize() != null && job.getFetchSize() > 0 ? job.getFetchSize() : defaultFetchSize;
+        if (fetchSize > 0) {
+            ps.setFetchSize(fetchSize);
+        }
+        Integer maxRows = IncrementalReportService.effectiveMaxRows(job);
+        if (maxRows != null && maxRows > 0) {
+            ps.setMaxRows(maxRows);
+        }
+        if (job.getQueryTimeoutSeconds() != null && job.getQueryTimeoutSeconds() > 0) {
+            ps.setQueryTimeout(job.getQueryTimeoutSeconds());
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class QueryStats {
+        private long rowCount;
+        private int fetchSize;
+        private long fetchRoundTrips;
+    }
+}
@@ -0,0 +1,118 @@
+package com.enterprise.reportgenerator.util;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Splits one result into slices by the value of a key column. Each distinct key
+ * gets its own writer, opened on first sight and fed with the header, so a single
+ * pass over the result produces one output per key. Rows do not need to be sorted
+ * by the key, but every slice stays open until the end, so the number of distinct
+ * keys is capped.
+ */
+public class BurstReportWriter implements ReportWriter {
+
+    public static final String BLANK_KEY = "(blank)";
+    public static final String NO_ROWS_KEY = "(no rows)";
+
+    private final String column;
+    private final SliceWriterFactory factory;
+    private final int maxSlices;
+    private final Map<String, ReportWriter> slices = new LinkedHashMap<>();
+    private int columnIndex = -1;
+    private String[] columns;
+    private int[] sqlTypes;
+    private long rowCount;
+
+    public BurstReportWriter(String column, SliceWriterFactory factory, int maxSlices) {
+        this.column = WatermarkTrackingWriter.unquote(column);
+        this.factory = factory;
+        this.maxSlices = maxSlices;
+    }
+
+    @Override
+    public void writeHeader(String[] columns, int[] sqlTypes) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(column)) {
+                columnIndex = i;
+                break;
+            }
+        }
+        if (columnIndex < 0) {
+            throw new IllegalStateException("Burst column '" + column + "' is not part of the query result");
+        }
+        this.columns = columns;
+        this.sqlTypes = sqlTypes;
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        String key = keyOf(values[columnIndex]);
+        ReportWriter slice = slices.get(key);
+        if (slice == null) {
+            slice = openSlice(key);
+        }
+        slice.writeRow(values);
+        rowCount++;
+    }
+
+    private ReportWriter openSlice(String key) throws IOException {
+        if (slices.size() >= maxSlices) {
+            throw new IllegalStateException("Burst column '" + column + "' has more than " + maxSlices
+                    + " distinct values");
+        }
+        ReportWriter slice = factory.open(key);
+        slices.put(key, slice); // Registered before the header so close() always reaches it
+        slice.writeHeader(columns, sqlTypes);
+        return slice;
+    }
+
+    static String keyOf(Object value) {
+        String key = CsvReportWriter.toText(value).trim();
+        return key.isEmpty() ? BLANK_KEY : key;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (slices.isEmpty() && columns != null) {
+            openSlice(NO_ROWS_KEY); // An empty result still yields one header-only file
+        }
+        for (ReportWriter slice : slices.values()) {
+            slice.finish();
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    // Slice writers by key, in the order the keys first appeared
+    public Map<String, ReportWriter> getSlices() {
+        return Collections.unmodifiableMap(slices);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (ReportWriter slice : slices.values()) {
+            try {
+                slice.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @FunctionalInterface
+    public interface SliceWriterFactory {
+        ReportWriter open(String key) throws IOException;
+    }
+}
@@ -1,57 +1,431 @@
 package com.enterprise.reportgenerator.util;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.WorkbookUtil;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Streaming XLSX writer. Only the last 100 rows live on the heap; older rows are
+ * flushed to compressed SXSSF temp files, so memory stays flat regardless of result size.
+ * Once a sheet holds maxRowsPerSheet data rows a new sheet is started, and once a
+ * workbook holds maxSheetsPerFile sheets it is written out and a new part file
+ * (name_part2.xlsx, ...) is started. Every sheet repeats the header row.
+ * Several result sets can go into one workbook as sections: each
+ * {@link #startSection(String)} begins a new sheet with its own header and name.
+ * <p>
+ * Each column gets a cell writer chosen once from its JDBC type, so dates and
+ * numbers end up as real Excel values with a shared style instead of text.
+ */
 @Slf4j
-public class ExcelGenerator {
+public class ExcelGenerator implements ReportWriter {
 
-    public static void generateExcel(List<Map<String, Object>> data, String filePath) throws IOException {
-        if (data == null || data.isEmpty()) {
-            log.warn("No data to write to Excel: {}", filePath);
+    // Excel's sheet limit minus the header row
+    public static final int MAX_DATA_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+
+    private static final int MAX_CELL_TEXT = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+    private static final int WIDTH_SAMPLE_ROWS = 200; // Column widths come from the header and the first rows
+    private static final int MAX_COLUMN_CHARS = 60;
+    private static final int MAX_SHEET_NAME = 31;
+
+    private final String filePath;
+    private final OutputStream stream;
+    private final int maxRowsPerSheet;
+    private final int maxSheetsPerFile;
+    private final List<String> partFiles = new ArrayList<>();
+    private SXSSFWorkbook workbook;
+    private Sheet sheet;
+    private String[] columns;
+    private CellWriter[] cellWriters;
+    private int[] columnChars;
+    private int rowIndex;
+    private int sheetRows;
+    private long rowCount;
+    private boolean finished;
+
+    private String sectionName = "Report";
+    private int sectionSheetCount;
+    private long sectionRows;
+    private Map<String, List<String>> sheetsBySection = new LinkedHashMap<>(); // Current workbook only
+    private List<String> sectionOrder;
+
+    // Styles belong to a workbook, so they are recreated for every part file
+    private CellStyle dateStyle;
+    private CellStyle dateTimeStyle;
+    private CellStyle decimalStyle;
+
+    public ExcelGenerator(String filePath) {
+        this(filePath, MAX_DATA_ROWS_PER_SHEET, 0);
+    }
+
+    // maxSheetsPerFile <= 0 keeps all sheets in one file
+    public ExcelGenerator(String filePath, int maxRowsPerSheet, int maxSheetsPerFile) {
+        this.filePath = filePath;
+        this.stream = null;
+        this.maxRowsPerSheet = maxRowsPerSheet > 0 ? Math.min(maxRowsPerSheet, MAX_DATA_ROWS_PER_SHEET)
+                : MAX_DATA_ROWS_PER_SHEET;
+        this.maxSheetsPerFile = maxSheetsPerFile;
+        newWorkbook();
+    }
+
+    /**
+     * Writes the workbook to a caller-owned stream in finish(), which then closes it.
+     * XLSX is a zip, so nothing reaches the stream before all rows are in; sheets
+     * still roll over, but there is always a single file.
+     */
+    public ExcelGenerator(OutputStream stream) {
+        this.filePath = "stream";
+        this.stream = stream;
+        this.maxRowsPerSheet = MAX_DATA_ROWS_PER_SHEET;
+        this.maxSheetsPerFile = 0;
+        newWorkbook();
+    }
+
+    private void newWorkbook() {
+        workbook = new SXSSFWorkbook(100); // Keep 100 rows in memory
+        workbook.setCompressTempFiles(true);
+        sheetsBySection = new LinkedHashMap<>();
+        DataFormat format = workbook.createDataFormat();
+        dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(format.getFormat("yyyy-mm-dd"));
+        dateTimeStyle = workbook.createCellStyle();
+        dateTimeStyle.setDataFormat(format.getFormat("yyyy-mm-dd hh:mm:ss"));
+        decimalStyle = workbook.createCellStyle();
+        decimalStyle.setDataFormat(format.getFormat("#,##0.00"));
+    }
+
+    /**
+     * Ends the current sheet; the next header starts a sheet named after the section
+     * (rollover sheets of a section are named "name (2)", "name (3)", ...).
+     */
+    public void startSection(String name) {
+        if (sheet != null) {
+            applyColumnWidths(sheet);
+        }
+        sectionName = name;
+        sectionSheetCount = 0;
+        sectionRows = 0;
+        sheet = null;
+        columns = null;
+    }
+
+    // Sheets are written in completion order; this puts the sections in the given order
+    public void setSectionOrder(List<String> names) {
+        this.sectionOrder = names;
+    }
+
+    @Override
+    public void writeHeader(String[] columns, int[] sqlTypes) {
+        this.columns = columns;
+        this.cellWriters = new CellWriter[columns.length];
+        this.columnChars = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            cellWriters[i] = writerFor(sqlTypes != null ? sqlTypes[i] : Types.OTHER);
+            columnChars[i] = columns[i].length();
+        }
+        startSheet();
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        if (sheetRows >= maxRowsPerSheet) {
+            rollover();
+        }
+        boolean sample = sectionRows < WIDTH_SAMPLE_ROWS;
+        Row row = sheet.createRow(rowIndex++);
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                continue; // Leave the cell blank
+            }
+            cellWriters[i].write(row.createCell(i), value);
+            if (sample) {
+                columnChars[i] = Math.max(columnChars[i], displayChars(value));
+            }
+        }
+        sheetRows++;
+        sectionRows++;
+        rowCount++;
+    }
+
+    private CellWriter writerFor(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+                return this::writeNumber;
+            case Types.DATE:
+                return this::writeDate;
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return this::writeTimestamp;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return this::writeBoolean;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+                return this::writeText;
+            default:
+                return this::writeAny;
+        }
+    }
+
+    private void writeNumber(Cell cell, Object value) {
+        if (!(value instanceof Number)) {
+            writeAny(cell, value);
             return;
         }
+        cell.setCellValue(((Number) value).doubleValue());
+        if (hasFraction((Number) value)) {
+            cell.setCellStyle(decimalStyle); // Whole numbers (ids, counts) stay unformatted
+        }
+    }
+
+    private static boolean hasFraction(Number value) {
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            return decimal.scale() > 0 && decimal.stripTrailingZeros().scale() > 0;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = value.doubleValue();
+            return d != Math.rint(d);
+        }
+        return false;
+    }
+
+    // Oracle DATE carries a time of day; only midnight values get the plain date format
+    private void writeDate(Cell cell, Object value) {
+        if (value instanceof Timestamp) {
+            LocalDateTime dateTime = ((Timestamp) value).toLocalDateTime();
+            cell.setCellValue(dateTime);
+            cell.setCellStyle(dateTime.toLocalTime().toSecondOfDay() == 0 ? dateStyle : dateTimeStyle);
+        } else if (value instanceof Date) {
+            cell.setCellValue((Date) value);
+            cell.setCellStyle(dateStyle);
+        } else if (value instanceof LocalDate) {
+            cell.setCellValue((LocalDate) value);
+            cell.setCellStyle(dateStyle);
+        } else {
+            writeTimestamp(cell, value);
+        }
+    }
+
+    private void writeTimestamp(Cell cell, Object value) {
+        if (value instanceof Timestamp) {
+            cell.setCellValue(((Timestamp) value).toLocalDateTime());
+        } else if (value instanceof LocalDateTime) {
+            cell.setCellValue((LocalDateTime) value);
+        } else if (value instanceof OffsetDateTime) {
+            cell.setCellValue(((OffsetDateTime) value).toLocalDateTime());
+        } else if (value instanceof ZonedDateTime) {
+            cell.setCellValue(((ZonedDateTime) value).toLocalDateTime());
+        } else if (value instanceof Date) {
+            cell.setCellValue((Date) value);
+        } else {
+            writeAny(cell, value);
+            return;
+        }
+        cell.setCellStyle(dateTimeStyle);
+    }
+
+    private void writeBoolean(Cell cell, Object value) {
+        if (value instanceof Boolean) {
+            cell.setCellValue((Boolean) value);
+        } else {
+            writeAny(cell, value);
+        }
+    }
+
+    private void writeText(Cell cell, Object value) {
+        String text = value.toString();
+        cell.setCellValue(text.length() > MAX_CELL_TEXT ? text.substring(0, MAX_CELL_TEXT) : text);
+    }
+
+    // Unknown column types: decide per value
+    private void writeAny(Cell cell, Object value) {
+        if (value instanceof Number) {
+            writeNumber(cell, value);
+        } else if (value instanceof Date || value instanceof LocalDateTime || value instanceof OffsetDateTime
+                || value instanceof ZonedDateTime) {
+            writeTimestamp(cell, value);
+        } else if (value instanceof LocalDate) {
+            writeDate(cell, value);
+        } else if (value instanceof Boolean) {
+            cell.setCellValue((Boolean) value);
+        } else {
+            writeText(cell, CsvReportWriter.toText(value));
+        }
+    }
+
+    private static int displayChars(Object value) {
+        if (value instanceof Date || value instanceof LocalDateTime || value instanceof OffsetDateTime
+                || value instanceof ZonedDateTime) {
+            return 19;
+        }
+        if (value instanceof LocalDate) {
+            return 10;
+        }
+        if (value instanceof BigDecimal || value instanceof BigInteger) {
+            return value.toString().length() + 4; // Room for grouping separators
+        }
+        return value.toString().length();
+    }
 
-        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100)) { // Keep 100 rows in memory
-            Sheet sheet = workbook.createSheet("Report");
+    private void rollover() throws IOException {
+        applyColumnWidths(sheet);
+        if (maxSheetsPerFile > 0 && workbook.getNumberOfSheets() >= maxSheetsPerFile) {
+            writeWorkbook();
+            workbook.dispose();
+            workbook.close();
+            newWorkbook();
+        }
+        startSheet();
+    }
 
-            // Create Header
-            Row headerRow = sheet.createRow(0);
-            Map<String, Object> firstRow = data.get(0);
-            int colIndex = 0;
-            for (String key : firstRow.keySet()) {
-                Cell cell = headerRow.createCell(colIndex++);
-                cell.setCellValue(key);
+    private void startSheet() {
+        String name = sheetName(sectionName, ++sectionSheetCount);
+        sheet = workbook.createSheet(name);
+        sheetsBySection.computeIfAbsent(sectionName, k -> new ArrayList<>()).add(name);
+        rowIndex = 0;
+        sheetRows = 0;
+        if (columns != null) {
+            Row headerRow = sheet.createRow(rowIndex++);
+            for (int i = 0; i < columns.length; i++) {
+                headerRow.createCell(i).setCellValue(columns[i]);
             }
+        }
+    }
 
-            // Populate Data
-            AtomicInteger rowIndex = new AtomicInteger(1);
-            for (Map<String, Object> rowData : data) {
-                Row row = sheet.createRow(rowIndex.getAndIncrement());
-                int cellIndex = 0;
-                for (Object value : rowData.values()) {
-                    Cell cell = row.createCell(cellIndex++);
-                    if (value instanceof Number) {
-                        cell.setCellValue(((Number) value).doubleValue());
-                    } else {
-                        cell.setCellValue(value != null ? value.toString() : "");
-                    }
-                }
+    private static String sheetName(String base, int number) {
+        String suffix = number == 1 ? "" : " (" + number + ")";
+        String safe = WorkbookUtil.createSafeSheetName(base);
+        if (safe.length() + suffix.length() > MAX_SHEET_NAME) {
+            safe = safe.substring(0, MAX_SHEET_NAME - suffix.length());
+        }
+        return safe + suffix;
+    }
+
+    private void applyColumnWidths(Sheet target) {
+        if (columnChars == null) {
+            return;
+        }
+        for (int i = 0; i < columnChars.length; i++) {
+            target.setColumnWidth(i, (Math.min(columnChars[i], MAX_COLUMN_CHARS) + 2) * 256);
+        }
+    }
+
+    private void applySectionOrder() {
+        if (sectionOrder == null) {
+            return;
+        }
+        int position = 0;
+        for (String section : sectionOrder) {
+            for (String name : sheetsBySection.getOrDefault(section, List.of())) {
+                workbook.setSheetOrder(name, position++);
             }
+        }
+        if (position > 0) {
+            workbook.setActiveSheet(0);
+            workbook.setSelectedTab(0);
+        }
+    }
 
-            // Write file
-            try (FileOutputStream out = new FileOutputStream(filePath)) {
+    private void writeWorkbook() throws IOException {
+        if (sheet != null) {
+            applyColumnWidths(sheet);
+        }
+        applySectionOrder();
+        if (stream != null) {
+            try (OutputStream out = stream) {
                 workbook.write(out);
             }
+            return;
+        }
+        String path = partPath(partFiles.size());
+        try (FileOutputStream out = new FileOutputStream(path)) {
+            workbook.write(out);
+        }
+        partFiles.add(path);
+    }
+
+    // First part keeps the requested name, later ones get _part2, _part3, ...
+    private String partPath(int index) {
+        if (index == 0) {
+            return filePath;
+        }
+        int dot = filePath.toLowerCase().endsWith(".xlsx") ? filePath.length() - 5 : filePath.length();
+        return filePath.substring(0, dot) + "_part" + (index + 1) + filePath.substring(dot);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (sheet == null) {
+            startSheet();
+        }
+        writeWorkbook();
+        finished = true;
+        log.info("Excel generated successfully at {} ({} rows, {} file(s))", filePath, rowCount, partFiles.size());
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    // Paths of all written files, first part first
+    public List<String> getPartFiles() {
+        return Collections.unmodifiableList(partFiles);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
             workbook.dispose(); // Dispose temporary files
-            log.info("Excel generated successfully at {}", filePath);
+            workbook.close();
+        } finally {
+            if (!finished) {
+                for (String part : partFiles) { // Parts of an unfinished report are useless on their own
+                    Files.deleteIfExists(Paths.get(part));
+                }
+            }
         }
     }
+
+    @FunctionalInterface
+    private interface CellWriter {
+        void write(Cell cell, Object value);
+    }
 }
@@ -0,0 +1,106 @@
+package com.enterprise.reportgenerator.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Path;
+
+/**
+ * JSON Lines writer: one object per row, keyed by column name. Numbers and
+ * booleans keep their JSON type; everything else is written as text.
+ */
+@Slf4j
+public class JsonLinesReportWriter implements ReportWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String target;
+    private final JsonGenerator generator;
+    private final boolean flushEarly;
+    private String[] columns;
+    private long rowCount;
+    private boolean finished;
+
+    public JsonLinesReportWriter(Path file) throws IOException {
+        this.target = file.toString();
+        this.generator = JSON_FACTORY.createGenerator(CsvReportWriter.openWriter(file, false));
+        this.generator.setRootValueSeparator(null); // Rows are separated by our own newlines
+        this.flushEarly = false;
+    }
+
+    // Stream variant for HTTP responses: the first row is flushed right away
+    public JsonLinesReportWriter(OutputStream stream) throws IOException {
+        this.target = "stream";
+        this.generator = JSON_FACTORY.createGenerator(CsvReportWriter.openWriter(stream, false));
+        this.generator.setRootValueSeparator(null);
+        this.flushEarly = true;
+    }
+
+    @Override
+    public void writeHeader(String[] columns, int[] sqlTypes) {
+        this.columns = columns;
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < values.length; i++) {
+            generator.writeFieldName(columns[i]);
+            writeValue(values[i]);
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        if (++rowCount == 1 && flushEarly) {
+            generator.flush();
+        }
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else {
+            generator.writeString(CsvReportWriter.toText(value));
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!finished) {
+            generator.close(); // Also closes the underlying writer
+            finished = true;
+            log.info("JSON Lines generated successfully at {} ({} rows)", target, rowCount);
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            finished = true;
+            if (!flushEarly) {
+                generator.close();
+            }
+            // A caller-owned stream is left open so an aborted response is not mistaken for a complete one
+        }
+    }
+}
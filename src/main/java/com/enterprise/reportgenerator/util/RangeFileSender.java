@@ -0,0 +1,170 @@
+package com.enterprise.reportgenerator.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Sends an immutable file with validators and byte-range support: strong ETag,
+ * Last-Modified, 304 for If-None-Match / If-Modified-Since, single-range 206
+ * responses honouring If-Range, and long-lived cache headers. The body goes out
+ * through Tomcat's sendfile when the connector offers it, otherwise through
+ * FileChannel.transferTo, so file regions never pass through the heap.
+ */
+public final class RangeFileSender {
+
+    // Below this size sendfile is not worth it (same threshold as Tomcat's DefaultServlet)
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private RangeFileSender() {
+    }
+
+    /**
+     * Strong validator for a report file: changes whenever the file is replaced,
+     * since size or modification time change with it.
+     */
+    public static String etag(String id, File file) {
+        return etag(id, file.length(), file.lastModified());
+    }
+
+    public static String etag(String id, long length, long lastModified) {
+        return "\"" + id + "-" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    public static void send(File file, String etag, String fileName, String contentType,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        send(file, 0, file.length(), file.lastModified(), etag, fileName, contentType, request, response);
+    }
+
+    /**
+     * Sends the region [offset, offset + length) of a file as if it were the whole
+     * resource; used for files kept uncompressed inside a day archive.
+     */
+    public static void send(File file, long offset, long length, long lastModified, String etag, String fileName,
+            String contentType, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (notModified(etag, lastModified, request, response)) {
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ifRangeMatches(request, etag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of(); // Unparseable: ignore the header and send everything
+            }
+            // Multi-range (multipart/byteranges) is not worth it for downloads; those get the whole file
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    start = length;
+                }
+                if (start >= length || start > end) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        start += offset;
+        setContentHeaders(fileName, contentType, count, response);
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED)) && count >= SENDFILE_MIN_SIZE) {
+            request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * Sends a body that can only be read sequentially (a compressed archive entry):
+     * same validators and caching, but no byte ranges.
+     */
+    public static void send(InputStream in, long length, long lastModified, String etag, String fileName,
+            String contentType, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+        if (notModified(etag, lastModified, request, response)) {
+            return;
+        }
+        setContentHeaders(fileName, contentType, length, response);
+        if (!"HEAD".equalsIgnoreCase(request.getMethod())) {
+            in.transferTo(response.getOutputStream());
+        }
+    }
+
+    // Sets ETag/Last-Modified and answers 304 (or 412) when the client's copy is current
+    private static boolean notModified(String etag, long lastModified, HttpServletRequest request,
+            HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        return new ServletWebRequest(request, response).checkNotModified(etag, lastModified);
+    }
+
+    private static void setContentHeaders(String fileName, String contentType, long length,
+            HttpServletResponse response) {
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setContentLengthLong(length);
+    }
+
+    // A Range applies only if the client's copy is still the current one
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag); // Strong comparison; weak tags never match
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date != -1 && lastModified / 1000 == date / 1000; // HTTP dates have second precision
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.enterprise.reportgenerator.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Output formats a job can produce. XLSX goes through POI; the others are
+ * plain text streamed straight to disk and are much cheaper for large extracts.
+ */
+public enum ReportFormat {
+
+    XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+    CSV("csv", "text/csv"),
+    CSV_GZIP("csv.gz", "application/gzip"),
+    JSONL("jsonl", "application/x-ndjson");
+
+    private final String extension;
+    private final String contentType;
+
+    ReportFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public ReportWriter newWriter(Path file) throws IOException {
+        switch (this) {
+            case CSV:
+                return new CsvReportWriter(file, false);
+            case CSV_GZIP:
+                return new CsvReportWriter(file, true);
+            case JSONL:
+                return new JsonLinesReportWriter(file);
+            default:
+                return new ExcelGenerator(file.toString());
+        }
+    }
+
+    // Writes to a caller-owned stream (e.g. an HTTP response); finish() closes it
+    public ReportWriter newWriter(OutputStream stream) throws IOException {
+        switch (this) {
+            case CSV:
+                return new CsvReportWriter(stream, false);
+            case CSV_GZIP:
+                return new CsvReportWriter(stream, true);
+            case JSONL:
+                return new JsonLinesReportWriter(stream);
+            default:
+                return new ExcelGenerator(stream);
+        }
+    }
+
+    // Jobs and reports saved before formats existed have no value and are XLSX
+    public static ReportFormat fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return XLSX;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,20 @@
+package com.enterprise.reportgenerator.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Incremental sink for query results. Rows are pushed one at a time while the
+ * ResultSet is being read, so implementations must not keep them around.
+ */
+public interface ReportWriter extends Closeable {
+
+    void writeHeader(String[] columns, int[] sqlTypes) throws IOException;
+
+    void writeRow(Object[] values) throws IOException;
+
+    // Flush everything to the target; the writer is unusable afterwards
+    void finish() throws IOException;
+
+    long getRowCount();
+}
@@ -0,0 +1,63 @@
+package com.enterprise.reportgenerator.util;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Pushes every row of a ResultSet into a {@link ReportWriter} as it is fetched.
+ * The header is written from the metadata even when the query returns no rows.
+ */
+public class ResultSetStreamer implements ResultSetExtractor<Long> {
+
+    private final ReportWriter writer;
+    private final BooleanSupplier cancelled;
+
+    public ResultSetStreamer(ReportWriter writer) {
+        this(writer, () -> false);
+    }
+
+    // The cancelled flag is polled before every row so a cancelled run stops writing immediately
+    public ResultSetStreamer(ReportWriter writer, BooleanSupplier cancelled) {
+        this.writer = writer;
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public Long extractData(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        String[] columns = new String[columnCount];
+        int[] sqlTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = JdbcUtils.lookupColumnName(metaData, i + 1);
+            sqlTypes[i] = metaData.getColumnType(i + 1);
+        }
+
+        try {
+            writer.writeHeader(columns, sqlTypes);
+            long rows = 0;
+            while (rs.next()) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Result streaming cancelled after " + rows + " rows");
+                }
+                Object[] values = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    values[i] = JdbcUtils.getResultSetValue(rs, i + 1);
+                }
+                writer.writeRow(values);
+                rows++;
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write report row", e);
+        }
+    }
+}
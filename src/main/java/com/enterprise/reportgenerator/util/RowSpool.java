@@ -0,0 +1,125 @@
+package com.enterprise.reportgenerator.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Temporary on-disk buffer for rows that cannot be written to their final
+ * destination yet (e.g. a later partition finishing before an earlier one).
+ * Rows are serialized to a temp file and replayed later in the same order.
+ * A spool created on an explicit path is kept on close (used for the segments of
+ * incremental jobs' cumulative output).
+ */
+public class RowSpool implements ReportWriter {
+
+    private static final int RESET_INTERVAL = 1000; // Stop ObjectOutputStream's handle table from growing
+
+    private final Path file;
+    private final boolean temporary;
+    private final ObjectOutputStream out;
+    private long rowCount;
+    private boolean finished;
+
+    public RowSpool() throws IOException {
+        this(Files.createTempFile("report-spool-", ".bin"), true);
+    }
+
+    public RowSpool(Path file) throws IOException {
+        this(file, false);
+    }
+
+    private RowSpool(Path file, boolean temporary) throws IOException {
+        this.file = file;
+        this.temporary = temporary;
+        this.out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+    }
+
+    @Override
+    public void writeHeader(String[] columns, int[] sqlTypes) throws IOException {
+        out.writeObject(columns);
+        out.writeObject(sqlTypes);
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        out.writeObject(values);
+        if (++rowCount % RESET_INTERVAL == 0) {
+            out.reset();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!finished) {
+            out.writeObject(null); // End marker
+            out.close();
+            finished = true;
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Streams the spooled rows into the target writer. When writeHeader is false
+     * the spooled header is skipped, so several spools can be appended to one writer.
+     */
+    public void replayInto(ReportWriter target, boolean writeHeader) throws IOException {
+        replayInto(target, writeHeader, Long.MAX_VALUE);
+    }
+
+    // Replays at most maxRows rows; returns how many were written
+    public long replayInto(ReportWriter target, boolean writeHeader, long maxRows) throws IOException {
+        finish();
+        return replay(file, target, writeHeader, maxRows);
+    }
+
+    public static void replay(Path file, ReportWriter target, boolean writeHeader) throws IOException {
+        replay(file, target, writeHeader, Long.MAX_VALUE);
+    }
+
+    private static long replay(Path file, ReportWriter target, boolean writeHeader, long maxRows)
+            throws IOException {
+        long written = 0;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            String[] columns = (String[]) in.readObject();
+            int[] sqlTypes = (int[]) in.readObject();
+            if (writeHeader) {
+                target.writeHeader(columns, sqlTypes);
+            }
+            Object row;
+            while (written < maxRows && (row = in.readObject()) != null) {
+                target.writeRow((Object[]) row);
+                written++;
+            }
+        } catch (EOFException e) {
+            throw new IOException("Spool file is truncated: " + file, e);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable spool file: " + file, e);
+        }
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!finished) {
+                out.close();
+                finished = true;
+            }
+        } finally {
+            if (temporary) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
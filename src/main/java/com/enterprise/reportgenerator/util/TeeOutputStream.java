@@ -0,0 +1,46 @@
+package com.enterprise.reportgenerator.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes every byte to two streams, e.g. an HTTP response and a copy on disk, so a
+ * streamed report is encoded only once. Closing closes both.
+ */
+public class TeeOutputStream extends OutputStream {
+
+    private final OutputStream primary;
+    private final OutputStream copy;
+
+    public TeeOutputStream(OutputStream primary, OutputStream copy) {
+        this.primary = primary;
+        this.copy = copy;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        primary.write(b);
+        copy.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        primary.write(b, off, len);
+        copy.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        primary.flush();
+        copy.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            primary.close();
+        } finally {
+            copy.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.enterprise.reportgenerator.util;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sends every row to several writers, so one query pass can feed several outputs.
+ */
+public class TeeReportWriter implements ReportWriter {
+
+    private final List<ReportWriter> targets;
+    private long rowCount;
+
+    public TeeReportWriter(List<ReportWriter> targets) {
+        this.targets = targets;
+    }
+
+    @Override
+    public void writeHeader(String[] columns, int[] sqlTypes) throws IOException {
+        for (ReportWriter target : targets) {
+            target.writeHeader(columns, sqlTypes);
+        }
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        for (ReportWriter target : targets) {
+            target.writeRow(values);
+        }
+        rowCount++;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        for (ReportWriter target : targets) {
+            target.finish();
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    // Targets are owned by the caller and closed there
+    @Override
+    public void close() {
+    }
+}
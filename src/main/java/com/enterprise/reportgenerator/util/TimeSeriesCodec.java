@@ -0,0 +1,214 @@
+package com.enterprise.reportgenerator.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Gorilla-style compression for (timestamp, double) points in time order.
+ * Timestamps are stored as delta-of-delta (one bit when points arrive on a
+ * steady schedule, 9-11 bits for a few ms of jitter), values as the XOR with
+ * the previous value, reusing the previous leading/trailing-zero window when
+ * it fits. A steady metric collected every few minutes costs 1-2 bytes per
+ * point instead of 16.
+ * <p>
+ * The encoder only ever appends bits, so a block can be written out while it is
+ * still growing: bytes before the last partially filled one never change.
+ */
+public final class TimeSeriesCodec {
+
+    private TimeSeriesCodec() {
+    }
+
+    public static final class Encoder {
+        private byte[] buffer = new byte[64];
+        private long bitPosition;
+        private int count;
+        private long firstTimestamp;
+        private long previousTimestamp;
+        private long previousDelta;
+        private long previousBits;
+        private int previousLeading = -1;
+        private int previousTrailing;
+
+        public void add(long timestamp, double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            if (count == 0) {
+                firstTimestamp = timestamp;
+                writeBits(timestamp, 64);
+                writeBits(bits, 64);
+            } else {
+                long delta = timestamp - previousTimestamp;
+                writeDeltaOfDelta(delta - previousDelta);
+                previousDelta = delta;
+                writeXor(bits ^ previousBits);
+            }
+            previousTimestamp = timestamp;
+            previousBits = bits;
+            count++;
+        }
+
+        private void writeDeltaOfDelta(long dod) {
+            if (dod == 0) {
+                writeBits(0, 1);
+            } else if (dod >= -64 && dod <= 63) {
+                writeBits(0b10, 2);
+                writeBits(dod, 7);
+            } else if (dod >= -256 && dod <= 255) {
+                writeBits(0b110, 3);
+                writeBits(dod, 9);
+            } else if (dod >= -2048 && dod <= 2047) {
+                writeBits(0b1110, 4);
+                writeBits(dod, 12);
+            } else {
+                writeBits(0b1111, 4);
+                writeBits(dod, 64);
+            }
+        }
+
+        private void writeXor(long xor) {
+            if (xor == 0) {
+                writeBits(0, 1);
+                return;
+            }
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31); // Fits in 5 bits
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                writeBits(0b10, 2);
+                writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                writeBits(0b11, 2);
+                writeBits(leading, 5);
+                writeBits(meaningful & 63, 6); // 64 is stored as 0
+                writeBits(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+
+        // Low n bits of value, most significant first
+        private void writeBits(long value, int n) {
+            int needed = (int) ((bitPosition + n + 7) >>> 3);
+            if (needed > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                if (((value >>> i) & 1) != 0) {
+                    buffer[(int) (bitPosition >>> 3)] |= (byte) (0x80 >>> (bitPosition & 7));
+                }
+                bitPosition++;
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getFirstTimestamp() {
+            return firstTimestamp;
+        }
+
+        public long getLastTimestamp() {
+            return previousTimestamp;
+        }
+
+        public int getByteLength() {
+            return (int) ((bitPosition + 7) >>> 3);
+        }
+
+        // Backing array; only the first getByteLength() bytes are meaningful
+        public byte[] getBuffer() {
+            return buffer;
+        }
+    }
+
+    /** Reads count points from a block; works on heap and memory-mapped buffers alike. */
+    public static final class Decoder {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int count;
+        private long bitPosition;
+        private int read;
+        private long timestamp;
+        private long delta;
+        private long bits;
+        private int leading;
+        private int trailing;
+
+        public Decoder(ByteBuffer buffer, int offset, int count) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.count = count;
+        }
+
+        public boolean next() {
+            if (read == count) {
+                return false;
+            }
+            if (read == 0) {
+                timestamp = readBits(64);
+                bits = readBits(64);
+            } else {
+                delta += readDeltaOfDelta();
+                timestamp += delta;
+                readXor();
+            }
+            read++;
+            return true;
+        }
+
+        private long readDeltaOfDelta() {
+            if (readBits(1) == 0) {
+                return 0;
+            }
+            if (readBits(1) == 0) {
+                return signed(readBits(7), 7);
+            }
+            if (readBits(1) == 0) {
+                return signed(readBits(9), 9);
+            }
+            if (readBits(1) == 0) {
+                return signed(readBits(12), 12);
+            }
+            return readBits(64);
+        }
+
+        private void readXor() {
+            if (readBits(1) == 0) {
+                return;
+            }
+            if (readBits(1) == 1) {
+                leading = (int) readBits(5);
+                int meaningful = (int) readBits(6);
+                if (meaningful == 0) {
+                    meaningful = 64;
+                }
+                trailing = 64 - leading - meaningful;
+            }
+            int meaningful = 64 - leading - trailing;
+            bits ^= readBits(meaningful) << trailing;
+        }
+
+        private static long signed(long raw, int n) {
+            return (raw << (64 - n)) >> (64 - n);
+        }
+
+        private long readBits(int n) {
+            long value = 0;
+            for (int i = 0; i < n; i++) {
+                int b = buffer.get(offset + (int) (bitPosition >>> 3));
+                value = (value << 1) | ((b >>> (7 - (bitPosition & 7))) & 1);
+                bitPosition++;
+            }
+            return value;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public double getValue() {
+            return Double.longBitsToDouble(bits);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.enterprise.reportgenerator.util;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Pass-through writer that remembers the highest value seen in the watermark
+ * column, so an incremental job knows where the next run has to start.
+ */
+public class WatermarkTrackingWriter implements ReportWriter {
+
+    private final ReportWriter delegate;
+    private final String column;
+    private int columnIndex = -1;
+    private Object max;
+
+    public WatermarkTrackingWriter(ReportWriter delegate, String column) {
+        this.delegate = delegate;
+        this.column = unquote(column);
+    }
+
+    @Override
+    public void writeHeader(String[] columns, int[] sqlTypes) throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(column)) {
+                columnIndex = i;
+                break;
+            }
+        }
+        if (columnIndex < 0) {
+            throw new IllegalStateException("Watermark column '" + column + "' is not part of the query result");
+        }
+        delegate.writeHeader(columns, sqlTypes);
+    }
+
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+        Object value = values[columnIndex];
+        if (value != null && (max == null || compare(value, max) > 0)) {
+            max = value;
+        }
+        delegate.writeRow(values);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compare(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        }
+        if (a instanceof Comparable && a.getClass().isInstance(b)) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    @Override
+    public void finish() throws IOException {
+        delegate.finish();
+    }
+
+    @Override
+    public long getRowCount() {
+        return delegate.getRowCount();
+    }
+
+    // Highest watermark value seen, or null when no row carried one
+    public Object getMax() {
+        return max;
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    public static String unquote(String column) {
+        String trimmed = column.trim();
+        if (trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+}